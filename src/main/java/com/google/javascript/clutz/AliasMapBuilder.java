@@ -2,6 +2,7 @@ package com.google.javascript.clutz;
 
 import com.google.javascript.rhino.Node;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -21,7 +22,7 @@ import java.util.Set;
 public class AliasMapBuilder extends ImportBasedMapBuilder {
   @Override
   protected Map<String, String> build(
-      String localModuleId, Node moduleBody, Set<String> googProvides) {
+      String localModuleId, List<ClassifiedStatement> statements, Set<String> googProvides) {
     Map<String, String> aliasMap = new HashMap<>();
     if (localModuleId == null) {
       // TODO(lucassloan): handle goog.module.get()
@@ -32,8 +33,9 @@ public class AliasMapBuilder extends ImportBasedMapBuilder {
     // names to the original symbol name eg `const C = goog.require('a.b.c');` will result in the map
     // containing 'C' -> 'module$exports$a$b$c'
     Map<String, String> localVariableToImportedSymbolNameMap = new HashMap<>();
-    for (Node statement : moduleBody.children()) {
-      if (isImportAssignment(statement)) {
+    for (ClassifiedStatement classified : statements) {
+      Node statement = classified.statement;
+      if (classified.kind == StatementKind.IMPORT_ASSIGNMENT) {
         // `const C = goog.require()` or
         // `const C = goog.module.get()`
         String importedModuleId = statement.getFirstFirstChild().getSecondChild().getString();
@@ -41,7 +43,7 @@ public class AliasMapBuilder extends ImportBasedMapBuilder {
 
         String importedSymbolName = buildWholeModuleExportSymbolName(importedModuleId);
         localVariableToImportedSymbolNameMap.put(localVariableName, importedSymbolName);
-      } else if (isImportDestructuringAssignment(statement)) {
+      } else if (classified.kind == StatementKind.IMPORT_DESTRUCTURING_ASSIGNMENT) {
         // `const {C, Clazz: RenamedClazz} = goog.require()` or
         // `const {C, Clazz: RenamedClazz} = goog.module.get()`
         String importedModuleId =
@@ -63,7 +65,7 @@ public class AliasMapBuilder extends ImportBasedMapBuilder {
           String importedSymbolName = buildNamedExportSymbolName(importedModuleId, originalName);
           localVariableToImportedSymbolNameMap.put(localVariableName, importedSymbolName);
         }
-      } else if (statement.isConst() && statement.getFirstChild().isName()) {
+      } else if (classified.kind == StatementKind.NAME_DECLARATION && statement.isConst()) {
         // Look for `const x = someExpression;`, where someExpression involves a local from one of
         // the above.
         // This is to handle the case like:
@@ -95,8 +97,9 @@ public class AliasMapBuilder extends ImportBasedMapBuilder {
 
     // Loop over the statements, looking for export statements, and add mappings to the alias map
     // if the export is of a variable that was imported
-    for (Node statement : moduleBody.children()) {
-      if (isWholeModuleExportAssignment(statement)) {
+    for (ClassifiedStatement classified : statements) {
+      Node statement = classified.statement;
+      if (classified.kind == StatementKind.WHOLE_MODULE_EXPORT) {
         // `exports = foo`
         String localVariableName = getExportsAssignmentRHS(statement);
 
@@ -105,7 +108,7 @@ public class AliasMapBuilder extends ImportBasedMapBuilder {
               buildWholeModuleExportSymbolName(localModuleId),
               localVariableToImportedSymbolNameMap.get(localVariableName));
         }
-      } else if (isNamedExportAssignment(statement)) {
+      } else if (classified.kind == StatementKind.NAMED_EXPORT) {
         // `exports.foo = foo;`
         String localVariableName = getExportsAssignmentRHS(statement);
         String exportName = getNamedExportName(statement);
@@ -115,7 +118,7 @@ public class AliasMapBuilder extends ImportBasedMapBuilder {
               buildNamedExportSymbolName(localModuleId, exportName),
               localVariableToImportedSymbolNameMap.get(localVariableName));
         }
-      } else if (isNamedExportPropAssignment(statement)) {
+      } else if (classified.kind == StatementKind.NAMED_EXPORT_PROP) {
         // `exports.foo = foo.bar;`
         String localVariableName = getExportsAssignmentPropRootName(statement);
         if (localVariableName.equals("exports")) {
@@ -131,7 +134,7 @@ public class AliasMapBuilder extends ImportBasedMapBuilder {
         aliasMap.put(
             buildNamedExportSymbolName(localModuleId, exportName),
             localNamespaceName + "." + localPropName);
-      } else if (isObjectLiteralExport(statement)) {
+      } else if (classified.kind == StatementKind.OBJECT_LITERAL_EXPORT) {
         // `exports = {foo, bar}`
         for (Map.Entry<String, String> e :
             objectLiteralASTToStringMap(statement.getFirstChild().getSecondChild()).entrySet()) {
@@ -0,0 +1,113 @@
+package com.google.javascript.clutz;
+
+import com.google.javascript.common.FlightRecorderEvents;
+import javax.annotation.Nullable;
+
+/**
+ * JDK Flight Recorder events of clutz, which show in a recording which namespaces, modules and
+ * symbols cost the most to emit.
+ *
+ * <p>An event is begun when the work it covers starts. When the work ends, its fields are only
+ * computed and it is only committed if {@link Event#shouldCommit} returns true, which without an
+ * active recording is never the case. The events are defined in {@link JfrClutzEvents}, which is
+ * loaded by {@link FlightRecorderEvents} only if the JDK has Flight Recorder. Otherwise every event
+ * is a shared instance that is never committed.
+ */
+final class ClutzEvents {
+  private static final Factory FACTORY =
+      FlightRecorderEvents.load(
+          Factory.class, "com.google.javascript.clutz.JfrClutzEvents", new NoEvents());
+
+  private ClutzEvents() {}
+
+  /** A begun event. */
+  interface Event {
+    /** Returns whether the event is recorded, and so needs its fields. */
+    boolean shouldCommit();
+  }
+
+  /** A phase of a clutz run, like the compilation or the emit of the provides. */
+  interface Phase extends Event {
+    void commit(String phase);
+  }
+
+  /** The emit of the namespace declaration of a symbol. */
+  interface DeclareNamespace extends Event {
+    void commit(String namespace, String symbol, String sourceFile, boolean isExtern);
+  }
+
+  /** The emit of the module declaration of a provide. */
+  interface DeclareModule extends Event {
+    void commit(String module, @Nullable String sourceFile);
+  }
+
+  /** The emit of the declaration of a top-level symbol by the tree walker. */
+  interface WalkSymbol extends Event {
+    void commit(String symbol, String sourceFile);
+  }
+
+  /** Begins the events, implemented by {@link JfrClutzEvents}. */
+  interface Factory {
+    Phase beginPhase();
+
+    DeclareNamespace beginDeclareNamespace();
+
+    DeclareModule beginDeclareModule();
+
+    WalkSymbol beginWalkSymbol();
+  }
+
+  static Phase beginPhase() {
+    return FACTORY.beginPhase();
+  }
+
+  static DeclareNamespace beginDeclareNamespace() {
+    return FACTORY.beginDeclareNamespace();
+  }
+
+  static DeclareModule beginDeclareModule() {
+    return FACTORY.beginDeclareModule();
+  }
+
+  static WalkSymbol beginWalkSymbol() {
+    return FACTORY.beginWalkSymbol();
+  }
+
+  /** The events without Flight Recorder, which are never committed. */
+  private static final class NoEvents
+      implements Factory, Phase, DeclareNamespace, DeclareModule, WalkSymbol {
+    @Override
+    public Phase beginPhase() {
+      return this;
+    }
+
+    @Override
+    public DeclareNamespace beginDeclareNamespace() {
+      return this;
+    }
+
+    @Override
+    public DeclareModule beginDeclareModule() {
+      return this;
+    }
+
+    @Override
+    public WalkSymbol beginWalkSymbol() {
+      return this;
+    }
+
+    @Override
+    public boolean shouldCommit() {
+      return false;
+    }
+
+    @Override
+    public void commit(String phase) {}
+
+    @Override
+    public void commit(String namespace, String symbol, String sourceFile, boolean isExtern) {}
+
+    @Override
+    public void commit(String module, @Nullable String sourceFile) {}
+  }
+}
@@ -1,7 +1,6 @@
 package com.google.javascript.clutz;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.Iterables.transform;
@@ -24,9 +23,11 @@ import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
-import com.google.common.io.Files;
+import com.google.javascript.common.ParallelTasks;
+import com.google.javascript.common.PersistentWorker;
 import com.google.javascript.jscomp.AbstractCommandLineRunner;
 import com.google.javascript.jscomp.CompilerInput;
+import com.google.javascript.jscomp.CompilerOptions;
 import com.google.javascript.jscomp.DiagnosticType;
 import com.google.javascript.jscomp.ErrorFormat;
 import com.google.javascript.jscomp.SourceFile;
@@ -54,11 +55,21 @@ import com.google.javascript.rhino.jstype.TemplateTypeMap;
 import com.google.javascript.rhino.jstype.TemplatizedType;
 import com.google.javascript.rhino.jstype.UnionType;
 import com.google.javascript.rhino.jstype.Visitor;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -72,6 +83,8 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.zip.ZipFile;
@@ -156,29 +169,42 @@ class DeclarationGenerator {
   private static final Splitter DOT_SPLITTER = Splitter.on('.');
 
   public static void main(String[] args) {
+    if (PersistentWorker.isPersistentWorkerRequested(args)) {
+      System.exit(new PersistentWorker(System.in, System.out, DeclarationGenerator::run).run());
+    }
+    System.exit(run(args, System.out, System.err));
+  }
+
+  /**
+   * Runs a single clutz invocation for the given command line, printing the output (if written to
+   * stdout) and diagnostics to the given streams.
+   *
+   * @return the process exit code for the invocation.
+   */
+  static int run(String[] args, PrintStream stdout, PrintStream stderr) {
     Options options = null;
     try {
       options = new Options(args);
     } catch (CmdLineException e) {
-      System.err.println(e.getMessage());
-      System.err.println("Usage: clutz [options...] arguments...");
-      e.getParser().printUsage(System.err);
-      System.err.println();
-      System.exit(1);
+      stderr.println(e.getMessage());
+      stderr.println("Usage: clutz [options...] arguments...");
+      e.getParser().printUsage(stderr);
+      stderr.println();
+      return 1;
     }
     try {
-      DeclarationGenerator generator = new DeclarationGenerator(options);
-      generator.generateDeclarations();
+      DeclarationGenerator generator = new DeclarationGenerator(options, stderr);
+      generator.generateDeclarations(stdout);
       if (generator.hasErrors()) {
         // Already reported through the print stream.
-        System.exit(2);
+        return 2;
       }
     } catch (Exception e) {
-      e.printStackTrace(System.err);
-      System.err.println("Uncaught exception in clutz, exiting.");
-      System.exit(3);
+      e.printStackTrace(stderr);
+      stderr.println("Uncaught exception in clutz, exiting.");
+      return 3;
     }
-    System.exit(0);
+    return 0;
   }
 
   static final DiagnosticType CLUTZ_MISSING_TYPES =
@@ -216,10 +242,39 @@ class DeclarationGenerator {
   private final Options opts;
   private final InitialParseRetainingCompiler compiler;
   private final ClutzErrorManager errorManager;
-  private StringWriter out = new StringWriter();
+  private final PrintStream errStream;
+
+  /**
+   * The error manager reports into this buffer, which is copied to errStream once the report is
+   * complete, so that the diagnostics can also be stored in the {@link OutputCache}.
+   */
+  private final ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+
+  /** The number of errors in the diagnostics replayed from the {@link OutputCache}. */
+  private int cachedErrorCount = 0;
+
+  /** Whether the output was copied from the {@link OutputCache}. */
+  private boolean usedCachedOutput = false;
+
+  /** Measures the phases of the run for {@link Options#statsFile}. */
+  private final PhaseStats stats;
 
-  /** If symbols x.y.z and x.y.w exist, childListMap['x.y'] contains the TypedVars for z and w. */
-  private final ListMultimap<String, TypedVar> childListMap = ArrayListMultimap.create();
+  /** Collects the slow symbols for {@link Options#slowSymbolThresholdMs}, null if not set. */
+  @Nullable private final SlowSymbolLog slowSymbols;
+
+  /** Attributes the output for {@link Options#sizeReportFile} while {@link #produceDts} runs. */
+  @Nullable private OutputSizeReport sizeReport;
+
+  /** Writes the declarations while {@link #produceDts} runs. */
+  private Emitter emitter;
+
+  /**
+   * If symbols x.y.z and x.y.w exist, childListMap['x.y'] contains the TypedVars for z and w.
+   *
+   * <p>Each child list is sorted by source file and name, so that the direct children of a
+   * namespace can be emitted in a stable order without scanning and sorting all top-scope symbols.
+   */
+  private final ListMultimap<String, TypedVar> childListMap;
 
   /**
    * Maps types to names for all emitted typedefs, so that further type walks just use the name.
@@ -228,7 +283,7 @@ class DeclarationGenerator {
    *
    * <p>Currently, this map only contains templatized types and record types.
    */
-  private final Map<JSType, String> typedefs = new HashMap<>();
+  private final Map<JSType, String> typedefs;
 
   /**
    * Aggregates all emitted types, used in a final pass to find types emitted in type position but
@@ -236,6 +291,12 @@ class DeclarationGenerator {
    */
   private final Set<String> typesUsed = new LinkedHashSet<>();
 
+  /**
+   * While {@link #processUnprovidedTypes} runs, queues the symbols of newly used types for emit.
+   * Null otherwise.
+   */
+  @Nullable private UnprovidedTypesWorklist unprovidedTypesWorklist;
+
   /**
    * In partial mode, closure doesn't know the correct name of imported symbols, and importRenameMap
    * is used to store the mappings from the closure supplied names to the correct names.
@@ -266,24 +327,67 @@ class DeclarationGenerator {
   private Set<String> collidingProvides = new LinkedHashSet<>();
 
   DeclarationGenerator(Options opts) {
+    this(opts, System.err);
+  }
+
+  DeclarationGenerator(Options opts, PrintStream errStream) {
     this.opts = opts;
-    this.compiler = new InitialParseRetainingCompiler();
+    this.errStream = errStream;
+    this.stats = new PhaseStats(opts.statsFile != null);
+    this.slowSymbols =
+        opts.slowSymbolThresholdMs >= 0 ? new SlowSymbolLog(opts.slowSymbolThresholdMs) : null;
+    // Not stdout, which may carry the declarations.
+    this.compiler = new InitialParseRetainingCompiler(errStream);
     compiler.disableThreads();
     this.errorManager =
         new ClutzErrorManager(
-            System.err, ErrorFormat.MULTILINE.toFormatter(compiler, true), opts.debug);
+            PersistentWorker.newUtf8PrintStream(diagnostics),
+            ErrorFormat.MULTILINE.toFormatter(compiler, true),
+            opts.debug);
     compiler.setErrorManager(errorManager);
+    this.childListMap = ArrayListMultimap.create();
+    this.typedefs = new HashMap<>();
     // Calling compiler.getTypeRegistry() is not safe here,
     // because it initializes some internal compiler structures.
     // We should pass the correct CompilerOptions, before that.
   }
 
+  /**
+   * Creates a generator for one shard of a parallel emit. It shares the compilation and all tables
+   * computed before the emit with {@code parent}, but has its own output buffer, indentation and
+   * used types.
+   */
+  private DeclarationGenerator(DeclarationGenerator parent) {
+    this.opts = parent.opts;
+    this.compiler = parent.compiler;
+    this.errorManager = parent.errorManager;
+    this.errStream = parent.errStream;
+    this.stats = parent.stats;
+    this.slowSymbols = parent.slowSymbols;
+    this.childListMap = parent.childListMap;
+    this.typedefs = parent.typedefs;
+    this.importRenameMap = parent.importRenameMap;
+    this.aliasMap = parent.aliasMap;
+    this.legacyNamespaceReexportMap = parent.legacyNamespaceReexportMap;
+    this.collidingProvides = parent.collidingProvides;
+    this.unknownType = parent.unknownType;
+    this.numberType = parent.numberType;
+    this.stringType = parent.stringType;
+    this.iterableType = parent.iterableType;
+    this.iteratorIterableType = parent.iteratorIterableType;
+    this.arrayType = parent.arrayType;
+  }
+
+  private String getDiagnostics() {
+    return new String(diagnostics.toByteArray(), UTF_8);
+  }
+
   boolean hasErrors() {
-    return errorManager.getErrorCount() > 0;
+    return errorManager.getErrorCount() + cachedErrorCount > 0;
   }
 
   /**
-   * Precompute the list of children symbols for all top-scope symbols.
+   * Precompute the sorted list of children symbols for all top-scope symbols.
    *
    * <p>I.e. For each x.y -> [x.y.z, x.y.w]
    */
@@ -294,6 +398,9 @@ class DeclarationGenerator {
         childListMap.put(namespace, var);
       }
     }
+    for (String namespace : childListMap.keySet()) {
+      sortSymbols(childListMap.get(namespace));
+    }
   }
 
   /**
@@ -350,10 +457,38 @@ class DeclarationGenerator {
   }
 
   void generateDeclarations() {
+    generateDeclarations(System.out);
+  }
+
+  /** Generates declarations, printing them to {@code stdout} if no output file is given. */
+  void generateDeclarations(PrintStream stdout) {
     if (!opts.partialInput) {
       throw new RuntimeException("clutz must be run in partialInput mode");
     }
 
+    stats.time("total", () -> readOrGenerateDeclarations(stdout));
+    if (opts.statsFile != null) {
+      try {
+        stats.writeJson(Paths.get(opts.statsFile), usedCachedOutput, opts.parallelism);
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Unable to write to file " + opts.statsFile, e);
+      }
+    }
+    if (opts.sizeReportFile != null) {
+      try {
+        OutputSizeReport.writeJson(
+            Paths.get(opts.sizeReportFile),
+            sizeReport != null ? sizeReport.getReport() : new OutputSizeReport.Report());
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Unable to write to file " + opts.sizeReportFile, e);
+      }
+    }
+    if (slowSymbols != null) {
+      slowSymbols.print(errStream);
+    }
+  }
+
+  private void readOrGenerateDeclarations(PrintStream stdout) {
     List<SourceFile> sourceFiles = new ArrayList<>();
 
     for (String source : opts.arguments) {
@@ -373,17 +508,112 @@ class DeclarationGenerator {
     if (opts.closureEnv != null) {
       externFiles.addAll(getDefaultExterns(opts));
     }
-    String result = generateDeclarations(sourceFiles, externFiles, opts.depgraph);
 
-    if ("-".equals(opts.output)) {
-      System.out.println(result);
-    } else {
-      File output = new File(opts.output);
-      try {
-        Files.asCharSink(output, UTF_8).write(result);
-      } catch (IOException e) {
-        throw new IllegalArgumentException("Unable to write to file " + opts.output, e);
+    OutputCache cache = null;
+    String cacheKey = null;
+    if (!opts.disableCache) {
+      cache = new OutputCache(Paths.get(opts.cacheDir), opts.cacheMaxSizeMb * 1024 * 1024);
+      cacheKey =
+          stats.time(
+              "computeCacheKey", () -> OutputCache.computeKey(opts, sourceFiles, externFiles));
+    }
+
+    try {
+      if ("-".equals(opts.output)) {
+        writeDeclarations(sourceFiles, externFiles, stdout, cache, cacheKey);
+        stdout.println();
+      } else {
+        writeDeclarationsToFile(sourceFiles, externFiles, cache, cacheKey);
       }
+    } catch (IOException | UncheckedIOException e) {
+      throw new IllegalArgumentException("Unable to write to file " + opts.output, e);
+    }
+  }
+
+  /**
+   * Writes the declarations to a temporary file next to {@link Options#output}, which replaces the
+   * output only once the declarations are complete. A run that fails while emitting deletes the
+   * temporary file, and leaves any previous output untouched.
+   */
+  private void writeDeclarationsToFile(
+      List<SourceFile> sourceFiles,
+      List<SourceFile> externFiles,
+      @Nullable OutputCache cache,
+      @Nullable String cacheKey)
+      throws IOException {
+    Path outputPath = Paths.get(opts.output).toAbsolutePath();
+    // Not created with Files.createTempFile, which would make the output readable by its owner
+    // only.
+    Path tempPath =
+        outputPath.resolveSibling(
+            "." + outputPath.getFileName() + "." + UUID.randomUUID() + ".tmp");
+    boolean moved = false;
+    try {
+      try (OutputStream output =
+          Files.newOutputStream(
+              tempPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+        writeDeclarations(sourceFiles, externFiles, output, cache, cacheKey);
+      }
+      Files.move(tempPath, outputPath, StandardCopyOption.REPLACE_EXISTING);
+      moved = true;
+    } finally {
+      if (!moved) {
+        Files.deleteIfExists(tempPath);
+      }
+    }
+  }
+
+  /**
+   * Writes the declarations to {@code output} as UTF-8, copying them from the cache on a hit, and
+   * otherwise streaming them into both {@code output} and a new cache entry as they are emitted.
+   */
+  private void writeDeclarations(
+      List<SourceFile> sourceFiles,
+      List<SourceFile> externFiles,
+      OutputStream output,
+      @Nullable OutputCache cache,
+      @Nullable String cacheKey)
+      throws IOException {
+    // The slow symbols and the output sizes are only known if the declarations are emitted, and
+    // the compiler only traces its passes if it runs.
+    if (cacheKey != null
+        && slowSymbols == null
+        && opts.sizeReportFile == null
+        && opts.tracerMode == CompilerOptions.TracerMode.OFF) {
+      if (stats.time("readCache", () -> readCache(cache, cacheKey, output))) {
+        return;
+      }
+    }
+    try (OutputCache.NewEntry entry = cacheKey != null ? cache.newEntry(cacheKey) : null) {
+      // Not closed, as that would close the output, which is stdout for "-o -".
+      Writer writer =
+          new BufferedWriter(
+              new OutputStreamWriter(entry != null ? entry.tee(output) : output, UTF_8));
+      generateDeclarations(sourceFiles, externFiles, opts.depgraph, writer);
+      if (entry != null) {
+        stats.time(
+            "writeCache", () -> entry.commit(getDiagnostics(), errorManager.getErrorCount()));
+      }
+    }
+  }
+
+  /**
+   * Replays the cached run under {@code cacheKey}, copying its declarations to {@code output}.
+   * Returns false if there is no such run.
+   */
+  private boolean readCache(OutputCache cache, String cacheKey, OutputStream output) {
+    try (OutputCache.CachedRun cached = cache.open(cacheKey)) {
+      if (cached == null) {
+        return false;
+      }
+      errStream.print(cached.diagnostics);
+      cachedErrorCount = cached.errorCount;
+      usedCachedOutput = true;
+      cached.copyDeclarationsTo(output);
+      output.flush();
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
     }
   }
 
@@ -409,17 +639,24 @@ class DeclarationGenerator {
   String generateDeclarations(
       List<SourceFile> sourceFiles, List<SourceFile> externs, Depgraph depgraph)
       throws AssertionError {
+    StringWriter dts = new StringWriter();
+    generateDeclarations(sourceFiles, externs, depgraph, dts);
+    return dts.toString();
+  }
+
+  /** Generates declarations, streaming them to {@code output}. */
+  void generateDeclarations(
+      List<SourceFile> sourceFiles, List<SourceFile> externs, Depgraph depgraph, Writer output)
+      throws AssertionError {
     // Compile should always be first here, because it sets internal state.
-    compiler.compile(externs, sourceFiles, opts.getCompilerOptions());
+    stats.time("compile", () -> compiler.compile(externs, sourceFiles, opts.getCompilerOptions()));
     if (opts.partialInput) {
-      importRenameMap =
-          new ImportRenameMapBuilder()
-              .build(compiler.getParsedInputs(), opts.depgraph.getGoogProvides());
-      aliasMap =
-          new AliasMapBuilder().build(compiler.getParsedInputs(), opts.depgraph.getGoogProvides());
-      legacyNamespaceReexportMap =
-          new LegacyNamespaceReexportMapBuilder()
-              .build(compiler.getParsedInputs(), opts.depgraph.getGoogProvides());
+      FusedImportBasedMapBuilder mapBuilder =
+          new FusedImportBasedMapBuilder(opts.depgraph.getGoogProvides(), opts.parallelism);
+      stats.time("buildImportMaps", () -> mapBuilder.build(compiler.getParsedInputs()));
+      importRenameMap = mapBuilder.getImportRenameMap();
+      aliasMap = mapBuilder.getAliasMap();
+      legacyNamespaceReexportMap = mapBuilder.getLegacyNamespaceReexportMap();
       collidingProvides = opts.collidingProvides;
     }
 
@@ -432,15 +669,14 @@ class DeclarationGenerator {
 
     arrayType = compiler.getTypeRegistry().getGlobalType("Array");
     // TODO(rado): replace with null and do not emit file when errors.
-    String dts = "";
     // If there is an error top scope is null.
     if (compiler.getTopScope() != null) {
-      precomputeChildLists();
-      collectTypedefs();
-      dts = produceDts(depgraph);
+      stats.time("precomputeChildLists", this::precomputeChildLists);
+      stats.time("collectTypedefs", this::collectTypedefs);
+      produceDts(depgraph, output);
     }
     errorManager.doGenerateReport();
-    return dts;
+    errStream.print(getDiagnostics());
   }
 
   private String getNamespace(String input) {
@@ -451,8 +687,11 @@ class DeclarationGenerator {
     return input.substring(0, dotIdx);
   }
 
-  String produceDts(Depgraph depgraph) {
-    out = new StringWriter();
+  void produceDts(Depgraph depgraph, Writer output) {
+    emitter = new Emitter(output);
+    if (opts.sizeReportFile != null) {
+      sizeReport = new OutputSizeReport(emitter);
+    }
 
     // Note: the specific emit of this header is depended upon by tsickle.
     emitComment("generated by clutz.");
@@ -502,82 +741,203 @@ class DeclarationGenerator {
       }
     }
 
-    Set<String> shadowedProvides = getShadowedProvides(provides);
+    // Built before processReservedSymbols, which removes the provides it collapses.
+    NamespaceTrie providesTrie = new NamespaceTrie(provides);
 
     TypedScope topScope = compiler.getTopScope();
 
     processReservedSymbols(provides, topScope);
 
-    for (String provide : provides) {
-      TypedVar symbol = topScope.getOwnSlot(provide);
-      String emitName = provide;
-      String rewritenProvide = MODULE_PREFIX + provide.replace('.', '$');
-      TypedVar moduleTypeVar = topScope.getOwnSlot(rewritenProvide);
-      if (moduleTypeVar != null) {
-        // The provide came from a goog.module.
-        symbol = moduleTypeVar;
-        emitName = rewritenProvide;
-        rewrittenProvides.add(rewritenProvide);
-      }
-      if (needsAlias(shadowedProvides, provide, symbol)) {
-        emitName += Constants.COLLDING_PROVIDE_ALIAS_POSTFIX;
-      }
-      if (symbol == null) {
-        // Sometimes goog.provide statements are used as pure markers for dependency management, or
-        // the defined provides do not get a symbol because they don't have a proper type.
-        SourceFile file = provideToFile.get(provide);
-        emitGeneratedFromFileComment(file);
-        emitNamespaceBegin(getNamespace(emitName));
-        emit("let");
-        emit(getUnqualifiedName(emitName));
-        emit(": any;");
-        emitBreak();
-        emitNamespaceEnd();
-        declareModule(provide, true, emitName, file);
-        continue;
-      }
-      if (symbol.getType() == null) {
-        // A module that contains only typedefs will appear as null symbol. However, we can get the
-        // corresponding type from the type registry.
-        JSType moduleType = compiler.getTypeRegistry().getGlobalType(rewritenProvide);
-        if (moduleType != null) {
-          declareTypedefNamespace(symbol, moduleType, provides);
-          declareModule(provide, /* isDefault */ true, rewritenProvide, symbol.getSourceFile());
-        } else {
-          emitComment("Skipping symbol " + symbol.getName() + " due to missing type information.");
-        }
-        continue;
-      }
-      // ArrayLike is defined in lib.d.ts, so we skip any type alias that
-      // would shadow it.
-      // Note that clutz expands type aliases used in closure code,
-      // thus this does not result in undefined types.
-      // This case handles goog.provided typedefs.
-      if (isTypedef(symbol.getType()) && isArrayLike(symbol)) {
-        emitSkipTypeAlias(symbol);
-        emitBreak();
-        continue;
-      }
-      String namespace = symbol.getName();
-      boolean isDefault = isDefaultExport(symbol);
-      // These goog.provide's have only one symbol, so users expect to use default import
-      if (isDefault) {
-        namespace = getNamespace(symbol.getName());
-      }
-      declareNamespace(namespace, symbol, emitName, isDefault, transitiveProvides, false);
-      declareModule(provide, isDefault, emitName, symbol.getSourceFile());
-    }
+    ProvideEmitContext context =
+        new ProvideEmitContext(topScope, provides, providesTrie, transitiveProvides, provideToFile);
+    stats.time(
+        "emitProvides",
+        () -> {
+          if (opts.parallelism > 1 && provides.size() > 1) {
+            emitProvidesInParallel(context, rewrittenProvides);
+          } else {
+            for (String provide : provides) {
+              emitProvide(provide, context, rewrittenProvides);
+            }
+          }
+        });
     // In order to typecheck in the presence of third-party externs, emit all extern symbols.
-    processExternSymbols();
+    stats.time("processExternSymbols", this::processExternSymbols);
 
     // For the purposes of determining which provides have been emitted
     // combine original provides and rewritten ones.
     provides.addAll(rewrittenProvides);
-    processUnprovidedTypes(provides, transitiveProvides);
-    declareLegacyNamespaceAliases();
+    stats.time(
+        "processUnprovidedTypes", () -> processUnprovidedTypes(provides, transitiveProvides));
+    stats.time("declareLegacyNamespaceAliases", this::declareLegacyNamespaceAliases);
+
+    checkState(
+        emitter.getIndent() == 0,
+        "indent must be zero after printing, but is %s",
+        emitter.getIndent());
+    stats.time("writeOutput", emitter::flush);
+  }
+
+  /** The state that is shared, read-only, by the emit of all provides. */
+  private static class ProvideEmitContext {
+    private final TypedScope topScope;
+    private final TreeSet<String> provides;
+    private final NamespaceTrie providesTrie;
+    private final Set<String> transitiveProvides;
+    private final Map<String, SourceFile> provideToFile;
+
+    private ProvideEmitContext(
+        TypedScope topScope,
+        TreeSet<String> provides,
+        NamespaceTrie providesTrie,
+        Set<String> transitiveProvides,
+        Map<String, SourceFile> provideToFile) {
+      this.topScope = topScope;
+      this.provides = provides;
+      this.providesTrie = providesTrie;
+      this.transitiveProvides = transitiveProvides;
+      this.provideToFile = provideToFile;
+    }
+  }
+
+  /**
+   * Emits the namespace and module declarations of a single provide. If the provide came from a
+   * goog.module, adds the name of its module symbol to rewrittenProvides.
+   */
+  private void emitProvide(
+      String provide, ProvideEmitContext context, Set<String> rewrittenProvides) {
+    TypedVar symbol = context.topScope.getOwnSlot(provide);
+    String emitName = provide;
+    String rewritenProvide = MODULE_PREFIX + provide.replace('.', '$');
+    TypedVar moduleTypeVar = context.topScope.getOwnSlot(rewritenProvide);
+    if (moduleTypeVar != null) {
+      // The provide came from a goog.module.
+      symbol = moduleTypeVar;
+      emitName = rewritenProvide;
+      rewrittenProvides.add(rewritenProvide);
+    }
+    if (needsAlias(context.providesTrie, provide, symbol)) {
+      emitName += Constants.COLLDING_PROVIDE_ALIAS_POSTFIX;
+    }
+    if (sizeReport != null) {
+      SourceFile file = context.provideToFile.get(provide);
+      sizeReport.startSymbol(
+          OutputSizeReport.PROVIDES, provide, file == null ? null : file.getName());
+    }
+    if (symbol == null) {
+      // Sometimes goog.provide statements are used as pure markers for dependency management, or
+      // the defined provides do not get a symbol because they don't have a proper type.
+      SourceFile file = context.provideToFile.get(provide);
+      emitGeneratedFromFileComment(file);
+      emitNamespaceBegin(getNamespace(emitName));
+      emit("let");
+      emit(getUnqualifiedName(emitName));
+      emit(": any;");
+      emitBreak();
+      emitNamespaceEnd();
+      declareModule(provide, true, emitName, file);
+      return;
+    }
+    if (symbol.getType() == null) {
+      // A module that contains only typedefs will appear as null symbol. However, we can get the
+      // corresponding type from the type registry.
+      JSType moduleType = compiler.getTypeRegistry().getGlobalType(rewritenProvide);
+      if (moduleType != null) {
+        declareTypedefNamespace(symbol, moduleType, context.provides);
+        declareModule(provide, /* isDefault */ true, rewritenProvide, symbol.getSourceFile());
+      } else {
+        emitComment("Skipping symbol " + symbol.getName() + " due to missing type information.");
+      }
+      return;
+    }
+    // ArrayLike is defined in lib.d.ts, so we skip any type alias that
+    // would shadow it.
+    // Note that clutz expands type aliases used in closure code,
+    // thus this does not result in undefined types.
+    // This case handles goog.provided typedefs.
+    if (isTypedef(symbol.getType()) && isArrayLike(symbol)) {
+      emitSkipTypeAlias(symbol);
+      emitBreak();
+      return;
+    }
+    String namespace = symbol.getName();
+    boolean isDefault = isDefaultExport(symbol);
+    // These goog.provide's have only one symbol, so users expect to use default import
+    if (isDefault) {
+      namespace = getNamespace(symbol.getName());
+    }
+    declareNamespace(namespace, symbol, emitName, isDefault, context.transitiveProvides, false);
+    declareModule(provide, isDefault, emitName, symbol.getSourceFile());
+  }
 
-    checkState(indent == 0, "indent must be zero after printing, but is %s", indent);
-    return out.toString();
+  /**
+   * Emits the provides like a loop over {@link #emitProvide} does, but splits them into contiguous
+   * shards that are emitted concurrently, each by its own generator. The shard outputs and used
+   * types are appended in provide order, so the result is identical to the serial emit.
+   *
+   * <p>The shards share the scopes and types of the compiler, which are not thread-safe. The emit
+   * mostly reads them, but Closure creates the prototypes of function types lazily, and creating
+   * the prototype of a constructor or interface adds it to the subtypes of its supertypes. So the
+   * prototypes of all constructors and interfaces in the top scope are created here, on the calling
+   * thread, before the shards start. The remaining calls of the emit that may create types, {@link
+   * #getPrototype} and {@link #createTemplatizedType}, synchronize on the type registry.
+   */
+  private void emitProvidesInParallel(ProvideEmitContext context, Set<String> rewrittenProvides) {
+    // The emit of every provide ends with a line break at the top level, so each shard can start
+    // from a fresh emitter state without changing the output.
+    checkState(
+        emitter.getIndent() == 0 && emitter.isStartOfLine(),
+        "parallel emit must start at the top level");
+    for (TypedVar symbol : context.topScope.getAllSymbols()) {
+      JSType type = symbol.getType();
+      FunctionType ftype = type != null ? type.toMaybeFunctionType() : null;
+      if (ftype != null && (ftype.isConstructor() || ftype.isInterface())) {
+        ftype.getPrototype();
+      }
+    }
+    List<String> provides = new ArrayList<>(context.provides);
+    // Use more shards than threads, as the emit size of provides varies a lot.
+    int shardCount = 4 * opts.parallelism;
+    int shardSize = Math.max(1, (provides.size() + shardCount - 1) / shardCount);
+    List<Callable<EmitShard>> tasks = new ArrayList<>();
+    for (List<String> shardProvides : Lists.partition(provides, shardSize)) {
+      tasks.add(
+          () -> {
+            EmitShard shard = new EmitShard(this);
+            for (String provide : shardProvides) {
+              shard.generator.emitProvide(provide, context, shard.rewrittenProvides);
+            }
+            checkState(
+                shard.generator.emitter.getIndent() == 0 && shard.generator.emitter.isStartOfLine(),
+                "shard must end at the top level");
+            return shard;
+          });
+    }
+
+    for (EmitShard shard :
+        ParallelTasks.invokeAll(opts.parallelism, tasks, PhaseStats::measureForRunningPhase)) {
+      emitter.emitLines(shard.output.toString());
+      if (sizeReport != null) {
+        sizeReport.appendShard(shard.generator.sizeReport);
+      }
+      typesUsed.addAll(shard.generator.typesUsed);
+      rewrittenProvides.addAll(shard.rewrittenProvides);
+    }
+  }
+
+  /** The generator, its output and the rewritten provides of one shard of a parallel emit. */
+  private static class EmitShard {
+    private final StringWriter output = new StringWriter();
+    private final DeclarationGenerator generator;
+    private final Set<String> rewrittenProvides = new TreeSet<>();
+
+    private EmitShard(DeclarationGenerator parent) {
+      generator = new DeclarationGenerator(parent);
+      generator.emitter = new Emitter(output);
+      if (parent.sizeReport != null) {
+        generator.sizeReport = new OutputSizeReport(generator.emitter);
+      }
+    }
   }
 
   /**
@@ -655,6 +1015,10 @@ class DeclarationGenerator {
         if (collapsedNamespaces.contains(namespace)) continue;
         collapsedNamespaces.add(namespace);
         Set<String> properties = getSubNamespace(provides, namespace);
+        if (sizeReport != null) {
+          sizeReport.startSymbol(
+              OutputSizeReport.PROVIDES, namespace, var != null ? var.getInputName() : null);
+        }
         if (var != null) {
           emitGeneratedFromFileComment(var.getSourceFile());
         }
@@ -694,10 +1058,11 @@ class DeclarationGenerator {
     return symbols.subSet(namespace + ".", namespace + ".\uFFFF");
   }
 
-  private Set<String> getShadowedProvides(TreeSet<String> provides) {
+  /** Returns the provides that have sub-provides, i.e. that are also used as namespaces. */
+  private Set<String> getShadowedProvides(Set<String> provides, NamespaceTrie providesTrie) {
     Set<String> shadowedProvides = new TreeSet<>();
     for (String provide : provides) {
-      if (!getSubNamespace(provides, provide).isEmpty()) {
+      if (providesTrie.hasNamesUnder(provide)) {
         shadowedProvides.add(provide);
       }
     }
@@ -712,91 +1077,144 @@ class DeclarationGenerator {
    * Closure does not require all types to be explicitly provided, if they are only used in type
    * positions. However, our emit phases only emits goog.provided symbols and namespaces, so this
    * extra pass is required, in order to have valid output.
+   *
+   * <p>A new set of types can be discovered while visiting unprovided types. Every name that is
+   * added to typesUsed queues its symbol on the worklist, and every symbol is visited at most once,
+   * so the pass terminates once no new types are used.
+   *
+   * <p>TODO(rado): investigate https://github.com/angular/clutz/pull/246 and removing this pass
+   * altogether.
    */
   private void processUnprovidedTypes(Set<String> provides, Set<String> transitiveProvides) {
-    /**
-     * A new set of types can be discovered while visiting unprovided types. To prevent an infinite
-     * loop in a pathological case, limit to a number of passes.
-     *
-     * <p>TODO(rado): investigate https://github.com/angular/clutz/pull/246 and removing this pass
-     * altogether.
-     */
-    int maxTypeUsedDepth = 5;
+    // AFAICT, there is no api for going from type to symbol, so index all symbols by name first.
+    unprovidedTypesWorklist = new UnprovidedTypesWorklist(compiler.getTopScope().getAllSymbols());
+    for (String name : typesUsed) {
+      unprovidedTypesWorklist.enqueue(name);
+    }
+    NamespaceTrie providesTrie = new NamespaceTrie(provides);
     Set<String> typesEmitted = new LinkedHashSet<>();
-    while (maxTypeUsedDepth > 0) {
-      int typesUsedCount = typesUsed.size();
-      // AFAICT, there is no api for going from type to symbol, so iterate all symbols first.
-      for (TypedVar symbol : compiler.getTopScope().getAllSymbols()) {
-        String name = symbol.getName();
-        String namespace = getNamespace(name);
-        // skip unused symbols, symbols already emitted or symbols whose namespace is emitted
-        // (unless the symbols have their own provide).
-        if (!typesUsed.contains(name)
-            || typesEmitted.contains(name)
-            || (!transitiveProvides.contains(name) && typesEmitted.contains(namespace))) {
-          continue;
-        }
+    TypedVar symbol;
+    while ((symbol = unprovidedTypesWorklist.next()) != null) {
+      String name = symbol.getName();
+      String namespace = getNamespace(name);
+      // skip symbols already emitted or symbols whose namespace is emitted (unless the symbols
+      // have their own provide).
+      if (typesEmitted.contains(name)
+          || (!transitiveProvides.contains(name) && typesEmitted.contains(namespace))) {
+        continue;
+      }
 
-        // skip provided symbols (as default or in an namespace).
-        if (provides.contains(name)
-            || (!transitiveProvides.contains(name) && provides.contains(namespace))) {
-          continue;
-        }
-        // skip emit for provided inner symbols too as they are covered by the walkInnerSymbols
-        // pass.
-        if (isInnerSymbol(provides, name)) {
-          continue;
-        }
+      // skip provided symbols (as default or in an namespace).
+      if (provides.contains(name)
+          || (!transitiveProvides.contains(name) && provides.contains(namespace))) {
+        continue;
+      }
+      // skip emit for provided inner symbols too as they are covered by the walkInnerSymbols
+      // pass.
+      if (isInnerSymbol(providesTrie, name)) {
+        continue;
+      }
 
-        // Skip extern symbols (they have a separate pass) and skip built-ins.
-        // Built-ins can be indentified by having null as input file.
-        CompilerInput symbolInput = this.compiler.getInput(new InputId(symbol.getInputName()));
-        if (symbolInput == null || symbolInput.isExtern()) continue;
+      // Skip extern symbols (they have a separate pass) and skip built-ins.
+      // Built-ins can be indentified by having null as input file.
+      CompilerInput symbolInput = this.compiler.getInput(new InputId(symbol.getInputName()));
+      if (symbolInput == null || symbolInput.isExtern()) continue;
 
-        if (shouldSkipVar(symbol)) {
-          continue;
-        }
+      if (shouldSkipVar(symbol)) {
+        continue;
+      }
 
-        // A symbol with a name, but a null type is likely a typedef. DeclareNamespace cannot handle
-        // this scenario, but declareTypedefNamespace
-        if (symbol.getType() == null) {
-          JSType typedef = compiler.getTypeRegistry().getGlobalType(name);
-          if (typedef != null) {
-            declareTypedefNamespace(symbol, typedef, Collections.emptySet());
-            typesEmitted.add(name);
-          }
-          continue;
+      if (sizeReport != null) {
+        sizeReport.startSymbol(OutputSizeReport.UNPROVIDED_TYPES, name, symbol.getInputName());
+      }
+      // A symbol with a name, but a null type is likely a typedef. DeclareNamespace cannot handle
+      // this scenario, but declareTypedefNamespace
+      if (symbol.getType() == null) {
+        JSType typedef = compiler.getTypeRegistry().getGlobalType(name);
+        if (typedef != null) {
+          declareTypedefNamespace(symbol, typedef, Collections.emptySet());
+          typesEmitted.add(name);
         }
+        continue;
+      }
+
+      declareNamespace(
+          namespace,
+          symbol,
+          name,
+          /* isDefault */ true,
+          Collections.<String>emptySet(),
+          /* isExtern */ false);
+      typesEmitted.add(name);
+    }
+    unprovidedTypesWorklist = null;
+  }
+
+  /** Records that a type is referenced by name in the output. */
+  private void markTypeUsed(String name) {
+    if (typesUsed.add(name) && unprovidedTypesWorklist != null) {
+      unprovidedTypesWorklist.enqueue(name);
+    }
+  }
 
-        declareNamespace(
-            namespace,
-            symbol,
-            name,
-            /* isDefault */ true,
-            Collections.<String>emptySet(),
-            /* isExtern */ false);
-        typesEmitted.add(name);
+  /**
+   * The symbols whose types are used, in the order in which repeated scans over all top-scope
+   * symbols would visit them: a symbol that is queued after the current position is visited in the
+   * current scan, a symbol before it in the next scan. Each symbol is queued at most once per name
+   * that is added to typesUsed.
+   */
+  private static class UnprovidedTypesWorklist {
+    private final List<TypedVar> symbols = new ArrayList<>();
+    private final Map<String, Integer> indexByName = new HashMap<>();
+    private TreeSet<Integer> currentScan = new TreeSet<>();
+    private TreeSet<Integer> nextScan = new TreeSet<>();
+    private int position = -1;
+
+    UnprovidedTypesWorklist(Iterable<TypedVar> allSymbols) {
+      for (TypedVar symbol : allSymbols) {
+        indexByName.putIfAbsent(symbol.getName(), symbols.size());
+        symbols.add(symbol);
+      }
+    }
+
+    void enqueue(String name) {
+      Integer index = indexByName.get(name);
+      if (index == null) {
+        return;
+      }
+      if (index > position) {
+        currentScan.add(index);
+      } else {
+        nextScan.add(index);
       }
-      // if no new types seen, safely break out.
-      if (typesUsed.size() == typesUsedCount) break;
-      maxTypeUsedDepth--;
+    }
+
+    @Nullable
+    TypedVar next() {
+      if (currentScan.isEmpty()) {
+        TreeSet<Integer> emptyScan = currentScan;
+        currentScan = nextScan;
+        nextScan = emptyScan;
+        position = -1;
+      }
+      Integer index = currentScan.pollFirst();
+      if (index == null) {
+        return null;
+      }
+      position = index;
+      return symbols.get(index);
     }
   }
 
   /**
    * Returns whether this is an inner symbol of at least one of the given goog.provides.
    *
-   * @param provides A collection of goog.provide symbols
+   * @param providesTrie A trie of goog.provide symbols
    * @param name Fully qualified name of a symbol
    * @return Whether this is an inner symbol
    */
-  private boolean isInnerSymbol(Collection<String> provides, String name) {
-    for (String p : provides) {
-      if (name.startsWith(p + '.')) {
-        return true;
-      }
-    }
-    return false;
+  private boolean isInnerSymbol(NamespaceTrie providesTrie, String name) {
+    return providesTrie.containsStrictPrefixOf(name);
   }
 
   /**
@@ -821,6 +1239,10 @@ class DeclarationGenerator {
         if (symbol != null) {
           JSType type = symbol.getType();
           if (type != null && isDefiningType(type)) {
+            if (sizeReport != null) {
+              sizeReport.startSymbol(
+                  OutputSizeReport.LEGACY_NAMESPACE_ALIASES, e.getKey(), symbol.getInputName());
+            }
             emitGeneratedFromFileComment(symbol.getSourceFile());
             emitNamespaceBegin(namespace);
             treeWalker.visitTypeValueAlias(googModuleStyleName, type.toMaybeObjectType());
@@ -888,12 +1310,13 @@ class DeclarationGenerator {
     }
 
     sortSymbols(externSymbols);
-    Set<String> shadowedSymbols = getShadowedProvides(externSymbolNames);
+    NamespaceTrie externSymbolsTrie = new NamespaceTrie(externSymbolNames);
+    Set<String> shadowedSymbols = getShadowedProvides(externSymbolNames, externSymbolsTrie);
     for (TypedVar symbol : externSymbols) {
       String parentPath = getNamespace(symbol.getName());
       boolean isDefault = isDefaultExport(symbol);
       String emitName = symbol.getName();
-      if (needsAlias(shadowedSymbols, symbol.getName(), symbol)) {
+      if (needsAlias(externSymbolsTrie, symbol.getName(), symbol)) {
         emitName += Constants.COLLDING_PROVIDE_ALIAS_POSTFIX;
       }
 
@@ -905,6 +1328,10 @@ class DeclarationGenerator {
       // definition.
       if (!isDefiningType(symbol.getType()) && visitedClassLikes.contains(parentPath)) continue;
 
+      if (sizeReport != null) {
+        sizeReport.startSymbol(
+            OutputSizeReport.EXTERN_SYMBOLS, symbol.getName(), symbol.getInputName());
+      }
       declareNamespace(
           isDefault ? parentPath : symbol.getName(),
           symbol,
@@ -942,11 +1369,12 @@ class DeclarationGenerator {
     Collections.sort(symbols, BY_SOURCE_FILE_AND_VAR_NAME);
   }
 
-  private boolean needsAlias(Set<String> shadowedSymbols, String provide, TypedVar symbol) {
+  private boolean needsAlias(NamespaceTrie symbolsTrie, String provide, TypedVar symbol) {
     if (collidingProvides.contains(provide)) {
       return true;
     }
-    if (!shadowedSymbols.contains(provide)) {
+    // Only symbols that are shadowed by a namespace of the same name can collide.
+    if (!symbolsTrie.hasNamesUnder(provide)) {
       return false;
     }
     // Emit var foo : any for provided but not declared symbols.
@@ -1031,7 +1459,20 @@ class DeclarationGenerator {
       boolean isDefault,
       Set<String> provides,
       boolean isExtern) {
+    ClutzEvents.DeclareNamespace event = ClutzEvents.beginDeclareNamespace();
+    emitNamespaceDeclaration(namespace, symbol, emitName, isDefault, provides, isExtern);
+    if (event.shouldCommit()) {
+      event.commit(namespace, symbol.getName(), symbol.getInputName(), isExtern);
+    }
+  }
 
+  private void emitNamespaceDeclaration(
+      String namespace,
+      TypedVar symbol,
+      String emitName,
+      boolean isDefault,
+      Set<String> provides,
+      boolean isExtern) {
     if (!isValidJSProperty(getUnqualifiedName(symbol))) {
       emit("// skipping property " + symbol.getName() + " because it is not a valid symbol.");
       emitBreak();
@@ -1063,8 +1504,6 @@ class DeclarationGenerator {
       // JSCompiler treats "foo.x" as one variable name, so collect all provides that start with
       // $provide + "." but are not sub-properties.
       Set<String> desiredSymbols = new TreeSet<>();
-      List<TypedVar> allSymbols = Lists.newArrayList(compiler.getTopScope().getAllSymbols());
-      sortSymbols(allSymbols);
 
       ObjectType objType = symbol.getType().toMaybeObjectType();
       // Can be null if the symbol is provided, but not defined.
@@ -1094,7 +1533,9 @@ class DeclarationGenerator {
         }
       }
 
-      for (TypedVar propertySymbol : allSymbols) {
+      // All desired symbols are direct children of the symbol, so only its child list needs to be
+      // checked.
+      for (TypedVar propertySymbol : childListMap.get(symbol.getName())) {
         String propertyName = propertySymbol.getName();
         if (desiredSymbols.contains(propertyName)
             && propertySymbol.getType() != null
@@ -1210,7 +1651,7 @@ class DeclarationGenerator {
     emit(emitName);
     emit(";");
     emitBreak();
-    typesUsed.add(alternativeAliasName);
+    markTypeUsed(alternativeAliasName);
   }
 
   // Ignoring Unicode symbols for now.
@@ -1408,6 +1849,19 @@ class DeclarationGenerator {
       String emitName,
       boolean inParentNamespace,
       StaticSourceFile sourceFile) {
+    ClutzEvents.DeclareModule event = ClutzEvents.beginDeclareModule();
+    emitModuleDeclaration(name, isDefault, emitName, inParentNamespace, sourceFile);
+    if (event.shouldCommit()) {
+      event.commit(name, sourceFile == null ? null : sourceFile.getName());
+    }
+  }
+
+  private void emitModuleDeclaration(
+      String name,
+      boolean isDefault,
+      String emitName,
+      boolean inParentNamespace,
+      StaticSourceFile sourceFile) {
     if (GOOG_BASE_NAMESPACE.equals(name)) {
       // goog:goog cannot be imported.
       return;
@@ -1456,45 +1910,24 @@ class DeclarationGenerator {
     }
   }
 
-  private int indent = 0;
-  private boolean startOfLine = true;
-
   private void indent() {
-    indent++;
+    emitter.indent();
   }
 
   private void unindent() {
-    indent--;
-    checkState(indent >= 0, "indentation level below zero");
+    emitter.unindent();
   }
 
   private void emitNoSpace(String str) {
-    maybeEmitIndent();
-    out.write(str);
+    emitter.emitNoSpace(str);
   }
 
   private void emit(String str) {
-    checkNotNull(str);
-    if (!maybeEmitIndent()) {
-      out.write(" ");
-    }
-    out.write(str);
-  }
-
-  private boolean maybeEmitIndent() {
-    if (!startOfLine) {
-      return false;
-    }
-    for (int i = 0; i < indent; i++) {
-      out.write("  ");
-    }
-    startOfLine = false;
-    return true;
+    emitter.emit(str);
   }
 
   private void emitBreak() {
-    out.write("\n");
-    startOfLine = true;
+    emitter.emitBreak();
   }
 
   /**
@@ -1506,6 +1939,9 @@ class DeclarationGenerator {
    *     generated.
    */
   private void emitGeneratedFromFileComment(StaticSourceFile file) {
+    if (sizeReport != null) {
+      sizeReport.startSourceFile(file == null ? null : file.getName());
+    }
     emit("// Generated from");
     String fileName = file == null ? "unknown file" : file.getName();
     emit(stripLineTerminators(fileName));
@@ -1528,8 +1964,30 @@ class DeclarationGenerator {
     return LINE_TERMINATORS.replaceFrom(s, '_');
   }
 
+  /**
+   * Returns the prototype of a function type. Closure creates missing prototypes lazily, which
+   * registers a constructor as a subtype of its superclass, so the call is synchronized for the
+   * shards of a parallel emit.
+   */
+  private ObjectType getPrototype(FunctionType type) {
+    synchronized (compiler.getTypeRegistry()) {
+      return type.getPrototype();
+    }
+  }
+
+  /**
+   * Returns {@code type} with unknown values for its template types. Like {@link #getPrototype},
+   * this creates and resolves a type through the shared type registry, so it is synchronized.
+   */
+  private TemplatizedType createTemplatizedType(ObjectType type) {
+    JSTypeRegistry registry = compiler.getTypeRegistry();
+    synchronized (registry) {
+      return registry.createTemplatizedType(type);
+    }
+  }
+
   private ObjectType getSuperType(FunctionType type) {
-    ObjectType proto = type.getPrototype();
+    ObjectType proto = getPrototype(type);
     if (proto == null) return null;
     ObjectType implicitProto = proto.getImplicitPrototype();
     if (implicitProto == null) return null;
@@ -1591,6 +2049,24 @@ class DeclarationGenerator {
     }
 
     private void walk(TypedVar symbol, String emitName) {
+      ClutzEvents.WalkSymbol event = ClutzEvents.beginWalkSymbol();
+      long start = slowSymbols != null ? System.nanoTime() : 0;
+      long startBytes = emitter.getByteCount();
+      walkSymbol(symbol, emitName);
+      if (slowSymbols != null) {
+        slowSymbols.record(
+            "walk",
+            symbol.getName(),
+            symbol.getInputName(),
+            emitter.getByteCount() - startBytes,
+            System.nanoTime() - start);
+      }
+      if (event.shouldCommit()) {
+        event.commit(symbol.getName(), symbol.getInputName());
+      }
+    }
+
+    private void walkSymbol(TypedVar symbol, String emitName) {
       JSType type = symbol.getType();
       if (type.isFunctionType() && !isNewableFunctionType(type.toMaybeFunctionType())) {
         FunctionType ftype = (FunctionType) type;
@@ -1703,7 +2179,7 @@ class DeclarationGenerator {
       emit(emitName);
       emit(";");
       emitBreak();
-      typesUsed.add(otype.getDisplayName());
+      markTypeUsed(otype.getDisplayName());
     }
 
     private void maybeEmitJsDoc(JSDocInfo docs, boolean ignoreParams) {
@@ -1784,7 +2260,7 @@ class DeclarationGenerator {
         emitCommaSeparatedInterfaces(it);
       }
 
-      visitObjectType(ftype, ftype.getPrototype(), getTemplateTypeNames(ftype));
+      visitObjectType(ftype, getPrototype(ftype), getTemplateTypeNames(ftype));
     }
 
     private void emitCommaSeparatedInterfaces(Iterator<ObjectType> it) {
@@ -2115,7 +2591,7 @@ class DeclarationGenerator {
       String displayName = maybeRewriteImportedName(type.getDisplayName());
       String maybeGlobalName = maybeRenameGlobalType(displayName);
       if (maybeGlobalName == null) {
-        typesUsed.add(displayName);
+        markTypeUsed(displayName);
         displayName = Constants.INTERNAL_NAMESPACE + "." + displayName;
       } else {
         displayName = maybeGlobalName;
@@ -2180,7 +2656,7 @@ class DeclarationGenerator {
       if (!skipDefCheck && typedefs.containsKey(typeToVisit)) {
         String typedefName = typedefs.get(typeToVisit);
         emit(Constants.INTERNAL_NAMESPACE + "." + typedefName);
-        typesUsed.add(typedefName);
+        markTypeUsed(typedefName);
         return;
       }
       // See also JsdocToEs6TypedConverter in the Closure code base. This code is implementing the
@@ -2309,7 +2785,7 @@ class DeclarationGenerator {
             @Override
             public Void caseEnumElementType(EnumElementType type) {
               emit(getAbsoluteName(type));
-              typesUsed.add(type.getDisplayName());
+              markTypeUsed(type.getDisplayName());
               return null;
             }
 
@@ -2389,7 +2865,7 @@ class DeclarationGenerator {
         // In Closure, subtypes of `TemplatizedType`s that do not take type arguments are still
         // represented by templatized types.
         emit(templateTypeName);
-        typesUsed.add(displayName);
+        markTypeUsed(displayName);
         return null;
       }
       if (typeRegistry.getNativeType(OBJECT_TYPE).equals(referencedType)) {
@@ -2400,7 +2876,7 @@ class DeclarationGenerator {
         return null;
       }
       emit(templateTypeName);
-      typesUsed.add(displayName);
+      markTypeUsed(displayName);
       emitGenericTypeArguments(templateTypes);
       return null;
     }
@@ -2838,10 +3314,10 @@ class DeclarationGenerator {
         }
       }
       // visit prototype properties.
-      if (superType.getConstructor() != null
-          && superType.getConstructor().getPrototype() != null
-          && superType.getConstructor().getPrototype().getOwnPropertyNames() != null) {
-        for (String field : superType.getConstructor().getPrototype().getOwnPropertyNames()) {
+      FunctionType constructor = superType.getConstructor();
+      ObjectType prototype = constructor != null ? getPrototype(constructor) : null;
+      if (prototype != null && prototype.getOwnPropertyNames() != null) {
+        for (String field : prototype.getOwnPropertyNames()) {
           // getPropertyType works with non-owned property names, i.e. names from the prototype
           // chain.
           if (!superType.getPropertyType(field).isFunctionType()) {
@@ -3379,6 +3855,28 @@ class DeclarationGenerator {
     }
 
     void walkInnerSymbols(ObjectType type, String innerNamespace) {
+      if (slowSymbols == null) {
+        emitInnerSymbols(type, innerNamespace);
+        return;
+      }
+      long start = System.nanoTime();
+      long startBytes = emitter.getByteCount();
+      emitInnerSymbols(type, innerNamespace);
+      long nanos = System.nanoTime() - start;
+      if (slowSymbols.isSlow(nanos)) {
+        FunctionType constructor =
+            type.isFunctionType() ? type.toMaybeFunctionType() : type.getConstructor();
+        Node source = constructor == null ? null : constructor.getSource();
+        slowSymbols.record(
+            "walkInnerSymbols",
+            innerNamespace,
+            source == null ? null : source.getSourceFileName(),
+            emitter.getByteCount() - startBytes,
+            nanos);
+      }
+    }
+
+    private void emitInnerSymbols(ObjectType type, String innerNamespace) {
       // TODO(martinprobst): This curiously duplicates visitProperty above. Investigate the code
       // smell and reduce duplication (or figure out & document why it's needed).
 
@@ -3491,8 +3989,7 @@ class DeclarationGenerator {
       // Closure doesn't require that all the type params be declared, but TS does
       if (!type.getTemplateTypeMap().isEmpty()
           && !typeRegistry.getNativeType(OBJECT_TYPE).equals(type)) {
-        return emitTemplatizedType(
-            typeRegistry.createTemplatizedType(type), inExtendsImplementsPosition);
+        return emitTemplatizedType(createTemplatizedType(type), inExtendsImplementsPosition);
       }
       String maybeGlobalName = maybeRenameGlobalType(type.getDisplayName());
       if (maybeGlobalName != null) {
@@ -3515,7 +4012,7 @@ class DeclarationGenerator {
         }
         emit(name);
         if (!type.getDisplayName().equals("Object")) {
-          typesUsed.add(type.getDisplayName());
+          markTypeUsed(type.getDisplayName());
         }
       } else {
         visitRecordType(type);
@@ -0,0 +1,120 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.base.Utf8;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes declarations token by token to a {@link Writer}, separating tokens on a line by a space and
+ * indenting lines by two spaces per level.
+ *
+ * <p>The emitter keeps no copy of the output, so when it writes to a file or stdout, the memory use
+ * of clutz does not grow with the size of the declarations.
+ */
+final class Emitter {
+  private final Writer out;
+
+  /** The indentation string of each level, computed on first use. */
+  private final List<String> indentations = new ArrayList<>();
+
+  private int indent = 0;
+  private boolean startOfLine = true;
+
+  /** The number of UTF-8 bytes written so far. */
+  private long byteCount = 0;
+
+  Emitter(Writer out) {
+    this.out = out;
+    indentations.add("");
+  }
+
+  void indent() {
+    indent++;
+  }
+
+  void unindent() {
+    indent--;
+    checkState(indent >= 0, "indentation level below zero");
+  }
+
+  int getIndent() {
+    return indent;
+  }
+
+  boolean isStartOfLine() {
+    return startOfLine;
+  }
+
+  /** Returns the number of bytes written so far, when encoded as UTF-8. */
+  long getByteCount() {
+    return byteCount;
+  }
+
+  void emitNoSpace(String str) {
+    maybeEmitIndent();
+    write(str);
+  }
+
+  void emit(String str) {
+    checkNotNull(str);
+    if (!maybeEmitIndent()) {
+      write(" ");
+    }
+    write(str);
+  }
+
+  void emitBreak() {
+    write("\n");
+    startOfLine = true;
+  }
+
+  /**
+   * Appends complete lines emitted by another emitter, e.g. for a shard of a parallel emit. Must be
+   * called at the start of an unindented line.
+   */
+  void emitLines(String lines) {
+    checkState(indent == 0 && startOfLine, "lines must be appended at the top level");
+    write(lines);
+  }
+
+  void flush() {
+    try {
+      out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private boolean maybeEmitIndent() {
+    if (!startOfLine) {
+      return false;
+    }
+    if (indent > 0) {
+      write(getIndentation(indent));
+    }
+    startOfLine = false;
+    return true;
+  }
+
+  private String getIndentation(int level) {
+    while (indentations.size() <= level) {
+      indentations.add(indentations.get(indentations.size() - 1) + "  ");
+    }
+    return indentations.get(level);
+  }
+
+  private void write(String str) {
+    try {
+      out.write(str);
+      byteCount += Utf8.encodedLength(str);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
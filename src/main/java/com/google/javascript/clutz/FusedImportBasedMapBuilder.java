@@ -0,0 +1,100 @@
+package com.google.javascript.clutz;
+
+import com.google.javascript.clutz.ImportBasedMapBuilder.ClassifiedBody;
+import com.google.javascript.common.ParallelTasks;
+import com.google.javascript.rhino.Node;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Builds the maps of {@link ImportRenameMapBuilder}, {@link AliasMapBuilder} and {@link
+ * LegacyNamespaceReexportMapBuilder} in a single pass over the parsed inputs, classifying every
+ * top-level statement only once instead of once per builder.
+ *
+ * <p>The maps of one input only depend on that input, so with a parallelism above 1 the inputs are
+ * processed on a {@link java.util.concurrent.ForkJoinPool}. The per input maps are then merged in
+ * input order, so the resulting maps, including their iteration order, are identical to the ones
+ * the individual builders produce.
+ */
+final class FusedImportBasedMapBuilder {
+  private final ImportRenameMapBuilder importRenameMapBuilder = new ImportRenameMapBuilder();
+  private final AliasMapBuilder aliasMapBuilder = new AliasMapBuilder();
+  private final LegacyNamespaceReexportMapBuilder legacyNamespaceReexportMapBuilder =
+      new LegacyNamespaceReexportMapBuilder();
+
+  private final Set<String> googProvides;
+  private final int parallelism;
+
+  private final Map<String, String> importRenameMap = new LinkedHashMap<>();
+  private final Map<String, String> aliasMap = new LinkedHashMap<>();
+  private final Map<String, String> legacyNamespaceReexportMap = new LinkedHashMap<>();
+
+  FusedImportBasedMapBuilder(Set<String> googProvides, int parallelism) {
+    this.googProvides = googProvides;
+    this.parallelism = parallelism;
+  }
+
+  void build(Collection<Node> parsedInputs) {
+    if (parallelism <= 1 || parsedInputs.size() <= 1) {
+      for (Node ast : parsedInputs) {
+        merge(buildInput(ast));
+      }
+      return;
+    }
+
+    List<Callable<InputMaps>> tasks = new ArrayList<>();
+    for (Node ast : parsedInputs) {
+      tasks.add(() -> buildInput(ast));
+    }
+    // Results come back in input order, which keeps the merge deterministic.
+    for (InputMaps maps :
+        ParallelTasks.invokeAll(parallelism, tasks, PhaseStats::measureForRunningPhase)) {
+      merge(maps);
+    }
+  }
+
+  Map<String, String> getImportRenameMap() {
+    return importRenameMap;
+  }
+
+  Map<String, String> getAliasMap() {
+    return aliasMap;
+  }
+
+  Map<String, String> getLegacyNamespaceReexportMap() {
+    return legacyNamespaceReexportMap;
+  }
+
+  /** Only reads the AST of the given input, so it is safe to call concurrently for other inputs. */
+  private InputMaps buildInput(Node ast) {
+    InputMaps maps = new InputMaps();
+    for (ClassifiedBody body : ImportBasedMapBuilder.classifyBodies(ast)) {
+      maps.importRenameMaps.add(
+          importRenameMapBuilder.build(body.moduleId, body.statements, googProvides));
+      maps.aliasMaps.add(aliasMapBuilder.build(body.moduleId, body.statements, googProvides));
+      maps.legacyNamespaceReexportMaps.add(
+          legacyNamespaceReexportMapBuilder.build(body.moduleId, body.statements, googProvides));
+    }
+    return maps;
+  }
+
+  private void merge(InputMaps maps) {
+    // Per body maps are merged one at a time, exactly like ImportBasedMapBuilder does, so later
+    // bodies override the entries of earlier ones.
+    maps.importRenameMaps.forEach(importRenameMap::putAll);
+    maps.aliasMaps.forEach(aliasMap::putAll);
+    maps.legacyNamespaceReexportMaps.forEach(legacyNamespaceReexportMap::putAll);
+  }
+
+  /** The maps built from the goog.module and goog.scope bodies of a single input. */
+  private static class InputMaps {
+    private final List<Map<String, String>> importRenameMaps = new ArrayList<>();
+    private final List<Map<String, String>> aliasMaps = new ArrayList<>();
+    private final List<Map<String, String>> legacyNamespaceReexportMaps = new ArrayList<>();
+  }
+}
@@ -2,14 +2,65 @@ package com.google.javascript.clutz;
 
 import com.google.javascript.rhino.Node;
 import java.util.*;
+import javax.annotation.Nullable;
 
 /**
  * ImportBasedMapBuilder is a base class for walking the closure AST and gathering information about
  * imports and exports that the closure compiler doesn't give access to in incremental mode.
  */
 public abstract class ImportBasedMapBuilder {
+  /** The kinds of top-level statements that are relevant to the map builders. */
+  enum StatementKind {
+    /** `goog.module('id');` */
+    GOOG_MODULE,
+    /** `goog.module.declareLegacyNamespace();` */
+    DECLARE_LEGACY_NAMESPACE,
+    /** See {@link #isImportAssignment}. */
+    IMPORT_ASSIGNMENT,
+    /** See {@link #isImportDestructuringAssignment}. */
+    IMPORT_DESTRUCTURING_ASSIGNMENT,
+    /** See {@link #isVariableDestructuringAssignment}. */
+    VARIABLE_DESTRUCTURING_ASSIGNMENT,
+    /** Any other declaration of a single name, e.g. `const x = a.b;`. */
+    NAME_DECLARATION,
+    /** See {@link #isWholeModuleExportAssignment}. */
+    WHOLE_MODULE_EXPORT,
+    /** See {@link #isObjectLiteralExport}. */
+    OBJECT_LITERAL_EXPORT,
+    /** See {@link #isNamedExportAssignment}. */
+    NAMED_EXPORT,
+    /** See {@link #isNamedExportPropAssignment}. */
+    NAMED_EXPORT_PROP,
+    OTHER
+  }
+
+  /** A top-level statement together with its {@link StatementKind}. */
+  static final class ClassifiedStatement {
+    final StatementKind kind;
+    final Node statement;
+
+    ClassifiedStatement(StatementKind kind, Node statement) {
+      this.kind = kind;
+      this.statement = statement;
+    }
+  }
+
+  /**
+   * The classified statements of a goog.module body, or of a top-level goog.scope body, in which
+   * case there is no module id.
+   */
+  static final class ClassifiedBody {
+    @Nullable final String moduleId;
+    final List<ClassifiedStatement> statements;
+
+    ClassifiedBody(@Nullable String moduleId, List<ClassifiedStatement> statements) {
+      this.moduleId = moduleId;
+      this.statements = statements;
+    }
+  }
+
   protected abstract Map<String, String> build(
-      String localModuleId, Node moduleBody, Set<String> googProvides);
+      String localModuleId, List<ClassifiedStatement> statements, Set<String> googProvides);
 
   /**
    * Build takes a collection of parsed inputs and walks the ast to find any imports into local
@@ -18,23 +69,76 @@ public abstract class ImportBasedMapBuilder {
   public Map<String, String> build(Collection<Node> parsedInputs, Set<String> googProvides) {
     Map<String, String> importRenameMap = new LinkedHashMap<>();
     for (Node ast : parsedInputs) {
-      // Symbols can be imported into a variable in a goog.module() file, so look for imports in the
-      // body of the goog module.
-      String moduleId = getGoogModuleId(ast);
-      if (moduleId != null) {
-        importRenameMap.putAll(build(moduleId, ast.getFirstChild(), googProvides));
+      for (ClassifiedBody body : classifyBodies(ast)) {
+        importRenameMap.putAll(build(body.moduleId, body.statements, googProvides));
       }
+    }
+    return importRenameMap;
+  }
 
-      // Or symbols can be imported into a variable in a top-level goog.scope() block, so look for
-      // imports in the bodies of any goog scopes.
-      List<Node> googScopes = getTopLevelGoogScopes(ast);
-      if (!googScopes.isEmpty()) {
-        for (Node googScope : googScopes) {
-          importRenameMap.putAll(build(null, googScope, googProvides));
+  /**
+   * Returns the bodies of the given input that can contain imports and exports, with their
+   * statements classified.
+   */
+  static List<ClassifiedBody> classifyBodies(Node astRoot) {
+    List<ClassifiedBody> bodies = new ArrayList<>();
+    // Symbols can be imported into a variable in a goog.module() file, so look for imports in the
+    // body of the goog module.
+    if (astRoot.hasChildren() && astRoot.getFirstChild().isModuleBody()) {
+      List<ClassifiedStatement> statements = classifyStatements(astRoot.getFirstChild());
+      for (ClassifiedStatement s : statements) {
+        if (s.kind == StatementKind.GOOG_MODULE) {
+          String moduleId = s.statement.getFirstChild().getSecondChild().getString();
+          bodies.add(new ClassifiedBody(moduleId, statements));
+          break;
         }
       }
     }
-    return importRenameMap;
+
+    // Or symbols can be imported into a variable in a top-level goog.scope() block, so look for
+    // imports in the bodies of any goog scopes.
+    for (Node googScope : getTopLevelGoogScopes(astRoot)) {
+      bodies.add(new ClassifiedBody(null, classifyStatements(googScope)));
+    }
+    return bodies;
+  }
+
+  private static List<ClassifiedStatement> classifyStatements(Node body) {
+    List<ClassifiedStatement> statements = new ArrayList<>();
+    for (Node statement : body.children()) {
+      statements.add(new ClassifiedStatement(classify(statement), statement));
+    }
+    return statements;
+  }
+
+  /** Classifies a statement, checking the patterns in the order the map builders check them. */
+  static StatementKind classify(Node statement) {
+    if (statement.isExprResult()) {
+      if (isGoogModuleCall(statement)) {
+        return StatementKind.GOOG_MODULE;
+      } else if (isDeclareLegacyNamespaceStatement(statement)) {
+        return StatementKind.DECLARE_LEGACY_NAMESPACE;
+      } else if (isWholeModuleExportAssignment(statement)) {
+        return StatementKind.WHOLE_MODULE_EXPORT;
+      } else if (isObjectLiteralExport(statement)) {
+        return StatementKind.OBJECT_LITERAL_EXPORT;
+      } else if (isNamedExportAssignment(statement)) {
+        return StatementKind.NAMED_EXPORT;
+      } else if (isNamedExportPropAssignment(statement)) {
+        return StatementKind.NAMED_EXPORT_PROP;
+      }
+    } else if (statement.isConst() || statement.isVar() || statement.isLet()) {
+      if (isImportAssignment(statement)) {
+        return StatementKind.IMPORT_ASSIGNMENT;
+      } else if (isImportDestructuringAssignment(statement)) {
+        return StatementKind.IMPORT_DESTRUCTURING_ASSIGNMENT;
+      } else if (isVariableDestructuringAssignment(statement)) {
+        return StatementKind.VARIABLE_DESTRUCTURING_ASSIGNMENT;
+      } else if (statement.getFirstChild().isName()) {
+        return StatementKind.NAME_DECLARATION;
+      }
+    }
+    return StatementKind.OTHER;
   }
 
   protected static List<Node> getTopLevelGoogScopes(Node astRoot) {
@@ -124,22 +228,23 @@ public abstract class ImportBasedMapBuilder {
             || rightHandSide.getFirstChild().matchesQualifiedName("goog.module.get"));
   }
 
-  protected static String getGoogModuleId(Node astRoot) {
-    if (!astRoot.hasChildren() || !astRoot.getFirstChild().isModuleBody()) {
-      return null;
+  /** Matches `goog.module.declareLegacyNamespace();` */
+  protected static boolean isDeclareLegacyNamespaceStatement(Node statement) {
+    if (!statement.isExprResult()) {
+      return false;
     }
 
-    Node moduleBody = astRoot.getFirstChild();
-    for (Node statement : moduleBody.children()) {
-      if (isGoogModuleCall(statement)) {
-        return statement.getFirstChild().getSecondChild().getString();
-      }
+    if (!statement.getFirstChild().isCall()) {
+      return false;
     }
-    return null;
+
+    Node callBody = statement.getFirstFirstChild();
+
+    return callBody.matchesQualifiedName("goog.module.declareLegacyNamespace");
   }
 
   /** Matches `exports = foo;` */
-  protected boolean isWholeModuleExportAssignment(Node statement) {
+  protected static boolean isWholeModuleExportAssignment(Node statement) {
     if (!statement.isExprResult()) {
       return false;
     }
@@ -160,7 +265,7 @@ public abstract class ImportBasedMapBuilder {
   }
 
   /** Matches `exports = {foo, bar};` */
-  protected boolean isObjectLiteralExport(Node statement) {
+  protected static boolean isObjectLiteralExport(Node statement) {
     if (!statement.isExprResult()) {
       return false;
     }
@@ -181,7 +286,7 @@ public abstract class ImportBasedMapBuilder {
   }
 
   /** Matches `exports.foo = foo;` */
-  protected boolean isNamedExportAssignment(Node statement) {
+  protected static boolean isNamedExportAssignment(Node statement) {
     if (!statement.isExprResult()) {
       return false;
     }
@@ -206,7 +311,7 @@ public abstract class ImportBasedMapBuilder {
   }
 
   /** Matches `exports.foo = foo.bar;` */
-  protected boolean isNamedExportPropAssignment(Node statement) {
+  protected static boolean isNamedExportPropAssignment(Node statement) {
     if (!statement.isExprResult()) {
       return false;
     }
@@ -2,6 +2,7 @@ package com.google.javascript.clutz;
 
 import com.google.javascript.rhino.Node;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -23,12 +24,13 @@ public class ImportRenameMapBuilder extends ImportBasedMapBuilder {
    */
   @Override
   protected Map<String, String> build(
-      String localModuleId, Node moduleBody, Set<String> googProvides) {
+      String localModuleId, List<ClassifiedStatement> statements, Set<String> googProvides) {
     Map<String, String> importRenameMap = new LinkedHashMap<>();
 
-    for (Node statement : moduleBody.children()) {
+    for (ClassifiedStatement classified : statements) {
+      Node statement = classified.statement;
       // Here and below goog.require and goog.requireType are treated identically.
-      if (isImportAssignment(statement)) {
+      if (classified.kind == StatementKind.IMPORT_ASSIGNMENT) {
         // `const C = goog.require()` or
         // `const C = goog.module.get()`
         String importedModuleId = statement.getFirstFirstChild().getSecondChild().getString();
@@ -46,7 +48,7 @@ public class ImportRenameMapBuilder extends ImportBasedMapBuilder {
           String localSymbolName = buildLocalSymbolName(localModuleId, variableName);
           importRenameMap.put(localSymbolName, exportedSymbolName);
         }
-      } else if (isImportDestructuringAssignment(statement)) {
+      } else if (classified.kind == StatementKind.IMPORT_DESTRUCTURING_ASSIGNMENT) {
         // `const {C, Clazz: RenamedClazz} = goog.require()` or
         // `const {C, Clazz: RenamedClazz} = goog.module.get()`
         String importedModuleId =
@@ -73,7 +75,7 @@ public class ImportRenameMapBuilder extends ImportBasedMapBuilder {
             importRenameMap.put(localSymbolName, exportedSymbolName);
           }
         }
-      } else if (isVariableDestructuringAssignment(statement)) {
+      } else if (classified.kind == StatementKind.VARIABLE_DESTRUCTURING_ASSIGNMENT) {
         // `const B = goog.require()`
         // `const {C, Clazz: RenamedClazz} = B`
         // On separate lines
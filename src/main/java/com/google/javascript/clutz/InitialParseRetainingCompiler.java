@@ -5,19 +5,33 @@ import static com.google.common.base.Preconditions.checkState;
 import com.google.javascript.jscomp.Compiler;
 import com.google.javascript.jscomp.CompilerInput;
 import com.google.javascript.jscomp.CompilerOptions;
+import com.google.javascript.jscomp.NodeUtil;
 import com.google.javascript.jscomp.Result;
 import com.google.javascript.jscomp.SourceFile;
 import com.google.javascript.rhino.Node;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * InitialParseRetainingCompiler clones a copy of the AST of the inputs before any of the compiler
- * passes are run. The original AST is required by ImportRenameMapBuilder.
+ * passes are run. The original AST is required by ImportRenameMapBuilder, AliasMapBuilder and
+ * LegacyNamespaceReexportMapBuilder.
+ *
+ * <p>Those builders only look at the shape of top-level statements of scripts, goog.module bodies
+ * and goog.scope bodies, so only a lean copy of those statements is retained instead of a deep
+ * clone of every input.
  */
 public class InitialParseRetainingCompiler extends Compiler {
   private List<Node> parsedInputs = new ArrayList<>();
 
+  /**
+   * Creates a compiler that prints reports, like the pass traces of --tracer_mode, to {@code out}.
+   */
+  InitialParseRetainingCompiler(PrintStream out) {
+    super(out);
+  }
+
   /**
    * Copied verbatim from com.google.javascript.jscomp.Compiler, except using getter methods instead
    * of private fields and running cloneParsedInputs() at the appropriate time.
@@ -53,12 +67,67 @@ public class InitialParseRetainingCompiler extends Compiler {
     return getResult();
   }
 
-  /** Loop over all the inputs and clone their ASTs into this.parsedInputs. */
+  /** Loop over all the inputs and clone the parts of their ASTs into this.parsedInputs. */
   private void cloneParsedInputs() {
     for (CompilerInput ci : getInputsById().values()) {
       Node n = ci.getAstRoot(this);
-      parsedInputs.add(n.cloneTree());
+      parsedInputs.add(cloneStatementList(n));
+    }
+  }
+
+  /**
+   * Clones a script, goog.module body or goog.scope body, keeping only the statements that can
+   * contain imports or exports: expression statements (goog.module(), goog.scope(), exports
+   * assignments, ...) and variable declarations (goog.require() assignments, aliases, ...).
+   */
+  private static Node cloneStatementList(Node statements) {
+    Node clone = statements.cloneNode();
+    for (Node statement : statements.children()) {
+      if (statement.isModuleBody()) {
+        clone.addChildToBack(cloneStatementList(statement));
+      } else if (ImportBasedMapBuilder.isGoogScopeCall(statement)) {
+        clone.addChildToBack(cloneGoogScopeCall(statement));
+      } else if (statement.isExprResult() || NodeUtil.isNameDeclaration(statement)) {
+        clone.addChildToBack(cloneWithoutFunctionBodies(statement));
+      }
+    }
+    return clone;
+  }
+
+  /** Clones {@code goog.scope(function() {...});}, keeping the statements of the scope body. */
+  private static Node cloneGoogScopeCall(Node statement) {
+    Node call = statement.getFirstChild();
+    Node callClone = call.cloneNode();
+    callClone.addChildToBack(call.getFirstChild().cloneTree());
+    for (Node arg = call.getSecondChild(); arg != null; arg = arg.getNext()) {
+      if (arg.isFunction()) {
+        Node functionClone = arg.cloneNode();
+        functionClone.addChildToBack(arg.getFirstChild().cloneTree());
+        functionClone.addChildToBack(arg.getSecondChild().cloneTree());
+        functionClone.addChildToBack(cloneStatementList(arg.getLastChild()));
+        callClone.addChildToBack(functionClone);
+      } else {
+        callClone.addChildToBack(cloneWithoutFunctionBodies(arg));
+      }
+    }
+    Node clone = statement.cloneNode();
+    clone.addChildToBack(callClone);
+    return clone;
+  }
+
+  /**
+   * Clones a tree, but replaces functions and classes by childless nodes. The map builders only
+   * check whether an expression is a function or class, they never look inside it.
+   */
+  private static Node cloneWithoutFunctionBodies(Node n) {
+    Node clone = n.cloneNode();
+    if (n.isFunction() || n.isClass()) {
+      return clone;
+    }
+    for (Node child : n.children()) {
+      clone.addChildToBack(cloneWithoutFunctionBodies(child));
     }
+    return clone;
   }
 
   public List<Node> getParsedInputs() {
@@ -0,0 +1,127 @@
+package com.google.javascript.clutz;
+
+import javax.annotation.Nullable;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The {@link ClutzEvents} as events of JDK Flight Recorder. This class needs {@code jdk.jfr}, and
+ * must only be loaded through {@link com.google.javascript.common.FlightRecorderEvents}.
+ */
+final class JfrClutzEvents implements ClutzEvents.Factory {
+  @Override
+  public ClutzEvents.Phase beginPhase() {
+    Phase event = new Phase();
+    event.begin();
+    return event;
+  }
+
+  @Override
+  public ClutzEvents.DeclareNamespace beginDeclareNamespace() {
+    DeclareNamespace event = new DeclareNamespace();
+    event.begin();
+    return event;
+  }
+
+  @Override
+  public ClutzEvents.DeclareModule beginDeclareModule() {
+    DeclareModule event = new DeclareModule();
+    event.begin();
+    return event;
+  }
+
+  @Override
+  public ClutzEvents.WalkSymbol beginWalkSymbol() {
+    WalkSymbol event = new WalkSymbol();
+    event.begin();
+    return event;
+  }
+
+  @Name("com.google.javascript.clutz.Phase")
+  @Label("Clutz Phase")
+  @Description("A phase of a clutz run, like the compilation or the emit of the provides")
+  @Category("Clutz")
+  @StackTrace(false)
+  static final class Phase extends Event implements ClutzEvents.Phase {
+    @Label("Phase")
+    String phase;
+
+    @Override
+    public void commit(String phase) {
+      this.phase = phase;
+      commit();
+    }
+  }
+
+  @Name("com.google.javascript.clutz.DeclareNamespace")
+  @Label("Declare Namespace")
+  @Description("The emit of the namespace declaration of a symbol")
+  @Category("Clutz")
+  @StackTrace(false)
+  static final class DeclareNamespace extends Event implements ClutzEvents.DeclareNamespace {
+    @Label("Namespace")
+    String namespace;
+
+    @Label("Symbol")
+    String symbol;
+
+    @Label("Source File")
+    String sourceFile;
+
+    @Label("Extern")
+    boolean isExtern;
+
+    @Override
+    public void commit(String namespace, String symbol, String sourceFile, boolean isExtern) {
+      this.namespace = namespace;
+      this.symbol = symbol;
+      this.sourceFile = sourceFile;
+      this.isExtern = isExtern;
+      commit();
+    }
+  }
+
+  @Name("com.google.javascript.clutz.DeclareModule")
+  @Label("Declare Module")
+  @Description("The emit of the module declaration of a provide")
+  @Category("Clutz")
+  @StackTrace(false)
+  static final class DeclareModule extends Event implements ClutzEvents.DeclareModule {
+    @Label("Module")
+    String module;
+
+    @Label("Source File")
+    String sourceFile;
+
+    @Override
+    public void commit(String module, @Nullable String sourceFile) {
+      this.module = module;
+      this.sourceFile = sourceFile;
+      commit();
+    }
+  }
+
+  @Name("com.google.javascript.clutz.WalkSymbol")
+  @Label("Walk Symbol")
+  @Description("The emit of the declaration of a top-level symbol by the tree walker")
+  @Category("Clutz")
+  @StackTrace(false)
+  static final class WalkSymbol extends Event implements ClutzEvents.WalkSymbol {
+    @Label("Symbol")
+    String symbol;
+
+    @Label("Source File")
+    String sourceFile;
+
+    @Override
+    public void commit(String symbol, String sourceFile) {
+      this.symbol = symbol;
+      this.sourceFile = sourceFile;
+      commit();
+    }
+  }
+}
@@ -2,6 +2,7 @@ package com.google.javascript.clutz;
 
 import com.google.javascript.rhino.Node;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -18,25 +19,26 @@ public class LegacyNamespaceReexportMapBuilder extends ImportBasedMapBuilder {
 
   @Override
   protected Map<String, String> build(
-      String localModuleId, Node moduleBody, Set<String> googProvides) {
+      String localModuleId, List<ClassifiedStatement> statements, Set<String> googProvides) {
     Map<String, String> reexportMap = new LinkedHashMap<>();
     if (localModuleId == null) {
       return reexportMap;
     }
 
-    if (!isLegacyNamespaceModule(moduleBody)) {
+    if (!isLegacyNamespaceModule(statements)) {
       return reexportMap;
     }
 
-    for (Node statement : moduleBody.children()) {
-      if (isWholeModuleExportAssignment(statement)) {
+    for (ClassifiedStatement classified : statements) {
+      Node statement = classified.statement;
+      if (classified.kind == StatementKind.WHOLE_MODULE_EXPORT) {
         // `exports = foo`
         String localVariableName = getExportsAssignmentRHS(statement);
 
         reexportMap.put(
             buildWholeModuleExportSymbolName(localModuleId),
             buildLocalSymbolName(localModuleId, localVariableName));
-      } else if (isNamedExportAssignment(statement)) {
+      } else if (classified.kind == StatementKind.NAMED_EXPORT) {
         // `exports.foo = foo`
         String localVariableName = getExportsAssignmentRHS(statement);
         String exportName = getNamedExportName(statement);
@@ -44,7 +46,7 @@ public class LegacyNamespaceReexportMapBuilder extends ImportBasedMapBuilder {
         reexportMap.put(
             buildNamedExportSymbolName(localModuleId, exportName),
             buildLocalSymbolName(localModuleId, localVariableName));
-      } else if (isObjectLiteralExport(statement)) {
+      } else if (classified.kind == StatementKind.OBJECT_LITERAL_EXPORT) {
         // `exports = {foo, bar}`
         for (Entry<String, String> e :
             objectLiteralASTToStringMap(statement.getFirstChild().getSecondChild()).entrySet()) {
@@ -60,27 +62,12 @@ public class LegacyNamespaceReexportMapBuilder extends ImportBasedMapBuilder {
     return reexportMap;
   }
 
-  private boolean isLegacyNamespaceModule(Node moduleBody) {
-    for (Node statement : moduleBody.children()) {
-      if (isDeclareLegacyNamespaceStatement(statement)) {
+  private boolean isLegacyNamespaceModule(List<ClassifiedStatement> statements) {
+    for (ClassifiedStatement classified : statements) {
+      if (classified.kind == StatementKind.DECLARE_LEGACY_NAMESPACE) {
         return true;
       }
     }
     return false;
   }
-
-  /** Matches `goog.module.declareLegacyNamespace();` */
-  protected boolean isDeclareLegacyNamespaceStatement(Node statement) {
-    if (!statement.isExprResult()) {
-      return false;
-    }
-
-    if (!statement.getFirstChild().isCall()) {
-      return false;
-    }
-
-    Node callBody = statement.getFirstFirstChild();
-
-    return callBody.matchesQualifiedName("goog.module.declareLegacyNamespace");
-  }
 }
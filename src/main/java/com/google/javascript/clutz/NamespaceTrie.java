@@ -0,0 +1,83 @@
+package com.google.javascript.clutz;
+
+import com.google.common.base.Splitter;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A trie over the dot separated segments of qualified names, e.g. of goog.provide'd namespaces.
+ *
+ * <p>Answers prefix questions about the set of names in time linear in the number of segments of
+ * the queried name, independent of the number of names in the trie. Segments are compared exactly,
+ * so {@code a.b} is a prefix of {@code a.b.c}, but not of {@code a.bc}.
+ */
+final class NamespaceTrie {
+  private static final Splitter DOT_SPLITTER = Splitter.on('.');
+
+  private final TrieNode root = new TrieNode();
+
+  NamespaceTrie(Iterable<String> names) {
+    for (String name : names) {
+      add(name);
+    }
+  }
+
+  void add(String name) {
+    TrieNode node = root;
+    for (String segment : DOT_SPLITTER.split(name)) {
+      node = node.children.computeIfAbsent(segment, s -> new TrieNode());
+    }
+    node.isName = true;
+  }
+
+  boolean contains(String name) {
+    TrieNode node = find(name);
+    return node != null && node.isName;
+  }
+
+  /**
+   * Returns whether some name in the trie is a strict prefix of the given name, e.g. whether {@code
+   * a.b} is an inner symbol of the goog.provide {@code a}.
+   */
+  boolean containsStrictPrefixOf(String name) {
+    TrieNode node = root;
+    Iterator<String> segments = DOT_SPLITTER.split(name).iterator();
+    while (segments.hasNext()) {
+      node = node.children.get(segments.next());
+      if (node == null) {
+        return false;
+      }
+      if (node.isName && segments.hasNext()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether the trie contains names nested under the given name, e.g. whether the
+   * goog.provide {@code a} is shadowed by the goog.provide {@code a.b}.
+   */
+  boolean hasNamesUnder(String name) {
+    TrieNode node = find(name);
+    // Nodes are only created along the path to a name, so every subtree contains at least one.
+    return node != null && !node.children.isEmpty();
+  }
+
+  private TrieNode find(String name) {
+    TrieNode node = root;
+    for (String segment : DOT_SPLITTER.split(name)) {
+      node = node.children.get(segment);
+      if (node == null) {
+        return null;
+      }
+    }
+    return node;
+  }
+
+  private static class TrieNode {
+    private final Map<String, TrieNode> children = new HashMap<>();
+    private boolean isName = false;
+  }
+}
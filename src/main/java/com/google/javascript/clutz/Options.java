@@ -156,7 +156,7 @@ public class Options {
             + "the compiled output size. "
             + "Options: ALL, AST_SIZE, RAW_SIZE, TIMING_ONLY, OFF"
   )
-  private CompilerOptions.TracerMode tracerMode = CompilerOptions.TracerMode.OFF;
+  CompilerOptions.TracerMode tracerMode = CompilerOptions.TracerMode.OFF;
 
   @Option(
     name = "--browserResolverStrippedPrefixes",
@@ -165,6 +165,62 @@ public class Options {
   )
   List<String> browserResolverStrippedPrefixes = new ArrayList<>();
 
+  @Option(
+    name = "--parallelism",
+    usage =
+        "Number of threads clutz uses for its own work after the closure compilation, like "
+            + "building the import maps and emitting the provides. The output does not depend on "
+            + "it. Defaults to 1, which does all work on the calling thread."
+  )
+  int parallelism = 1;
+
+  @Option(
+    name = "--cache_dir",
+    usage =
+        "directory of the local cache of clutz outputs. Runs with the same inputs and options "
+            + "reuse the cached output instead of compiling again. Defaults to ~/.cache/clutz.",
+    metaVar = "DIR"
+  )
+  String cacheDir =
+      new File(new File(System.getProperty("user.home"), ".cache"), "clutz").getPath();
+
+  @Option(
+    name = "--cache_max_size_mb",
+    usage = "size limit of the output cache, the least recently used outputs are evicted first"
+  )
+  long cacheMaxSizeMb = 256;
+
+  @Option(name = "--disable_cache", usage = "neither read nor write the local output cache")
+  boolean disableCache = false;
+
+  @Option(
+    name = "--stats",
+    usage =
+        "write the wall time, CPU time and allocated bytes of the closure compilation and of each "
+            + "phase of clutz to this file, as JSON",
+    metaVar = "FILE"
+  )
+  String statsFile = null;
+
+  @Option(
+    name = "--slow_symbol_threshold_ms",
+    usage =
+        "print the top-level and inner symbols whose declarations took at least this many "
+            + "milliseconds to emit to stderr, with their source file and emitted size, the slowest "
+            + "first. The cached output is not read while this is set.",
+    metaVar = "MILLIS"
+  )
+  long slowSymbolThresholdMs = -1;
+
+  @Option(
+    name = "--size_report",
+    usage =
+        "write the number of bytes of the output that each section, top-level symbol and source "
+            + "file produced to this file, as JSON. The cached output is not read while this is set.",
+    metaVar = "FILE"
+  )
+  String sizeReportFile = null;
+
   @Argument
   @Option(name = "--", handler = StopOptionHandler.class)
   List<String> arguments = new ArrayList<>();
@@ -239,6 +295,9 @@ public class Options {
   Options(String[] args) throws CmdLineException {
     CmdLineParser parser = new CmdLineParser(this);
     parser.parseArgument(args);
+    if (parallelism < 1) {
+      throw new CmdLineException(parser, "--parallelism must be at least 1");
+    }
     if (skipEmitRegExp != null) {
       skipEmitPattern = Pattern.compile(skipEmitRegExp);
     }
@@ -0,0 +1,319 @@
+package com.google.javascript.clutz;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.javascript.common.CodeFingerprint;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.SourceFile;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+
+/**
+ * A local, on-disk cache of clutz outputs, addressed by a digest of everything that determines the
+ * output: the names and contents of all sources and externs, the depgraphs, the colliding provides,
+ * the options that change the emit, and the clutz and closure binaries.
+ *
+ * <p>Every entry consists of a {@code .d.ts} file with the declarations and a JSON file with the
+ * diagnostics, both named after the key. Declarations are streamed into and out of the cache, so
+ * that it does not hold them in memory. Reading an entry refreshes the modification time of its
+ * JSON file, and writing one evicts the least recently used entries until the cache fits in its
+ * size limit. Both files are written to temporary files and moved into place, the JSON file last,
+ * so concurrent clutz processes can share a cache directory. The cache is an optimization only, so
+ * failures to read or write it are ignored.
+ */
+final class OutputCache {
+  /** Bump when the format of the entries, or the way clutz uses them, changes. */
+  private static final int FORMAT_VERSION = 2;
+
+  private static final String METADATA_SUFFIX = ".json";
+  private static final String DECLARATIONS_SUFFIX = ".d.ts";
+
+  private final Path directory;
+  private final long maxSizeBytes;
+  private final Gson gson = new Gson();
+
+  OutputCache(Path directory, long maxSizeBytes) {
+    this.directory = directory;
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /** The part of an entry that is stored as JSON. */
+  static class Metadata {
+    String diagnostics;
+    int errorCount;
+
+    Metadata(String diagnostics, int errorCount) {
+      this.diagnostics = diagnostics;
+      this.errorCount = errorCount;
+    }
+  }
+
+  /** A cache hit, which must be closed after its declarations are copied. */
+  static final class CachedRun implements Closeable {
+    final String diagnostics;
+    final int errorCount;
+    private final InputStream declarations;
+
+    private CachedRun(Metadata metadata, InputStream declarations) {
+      this.diagnostics = metadata.diagnostics;
+      this.errorCount = metadata.errorCount;
+      this.declarations = declarations;
+    }
+
+    void copyDeclarationsTo(OutputStream output) throws IOException {
+      ByteStreams.copy(declarations, output);
+    }
+
+    @Override
+    public void close() throws IOException {
+      declarations.close();
+    }
+  }
+
+  /**
+   * Returns the cache key for a clutz run, or null if the inputs cannot be read, in which case the
+   * run should not be cached.
+   */
+  @Nullable
+  static String computeKey(Options opts, List<SourceFile> sources, List<SourceFile> externs) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putInt(FORMAT_VERSION);
+    try {
+      CodeFingerprint.put(hasher, DeclarationGenerator.class);
+      CodeFingerprint.put(hasher, Compiler.class);
+
+      hasher.putInt(sources.size());
+      for (SourceFile source : sources) {
+        putString(hasher, source.getName());
+        putString(hasher, source.getCode());
+      }
+      hasher.putInt(externs.size());
+      for (SourceFile extern : externs) {
+        putString(hasher, extern.getName());
+        putString(hasher, extern.getCode());
+      }
+      hasher.putInt(opts.depgraphFiles.size());
+      for (String depgraphFile : opts.depgraphFiles) {
+        putString(hasher, new String(Files.readAllBytes(new File(depgraphFile).toPath()), UTF_8));
+      }
+    } catch (IOException e) {
+      return null;
+    }
+    putStrings(hasher, new TreeSet<>(opts.collidingProvides));
+
+    hasher.putBoolean(opts.partialInput);
+    hasher.putBoolean(opts.debug);
+    hasher.putBoolean(opts.strictDeps);
+    putString(hasher, String.valueOf(opts.skipEmitRegExp));
+    putString(hasher, String.valueOf(opts.closureEnv));
+    putStrings(hasher, opts.entryPoints);
+    putStrings(hasher, opts.browserResolverStrippedPrefixes);
+    return hasher.hash().toString();
+  }
+
+  /** Returns the entry for the given key, or null on a cache miss. */
+  @Nullable
+  CachedRun open(String key) {
+    Path metadataPath = directory.resolve(key + METADATA_SUFFIX);
+    try {
+      Metadata metadata =
+          gson.fromJson(new String(Files.readAllBytes(metadataPath), UTF_8), Metadata.class);
+      if (metadata == null) {
+        return null;
+      }
+      Files.setLastModifiedTime(metadataPath, FileTime.fromMillis(System.currentTimeMillis()));
+      return new CachedRun(
+          metadata, Files.newInputStream(directory.resolve(key + DECLARATIONS_SUFFIX)));
+    } catch (IOException | JsonParseException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Starts writing the entry for the given key, or returns null if the cache directory is not
+   * writable. The entry must be closed, which discards it unless it was committed.
+   */
+  @Nullable
+  NewEntry newEntry(String key) {
+    try {
+      Files.createDirectories(directory);
+      Path declarationsPath = Files.createTempFile(directory, key, ".tmp");
+      return new NewEntry(key, declarationsPath, Files.newOutputStream(declarationsPath));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /** An entry that is being written. */
+  final class NewEntry implements Closeable {
+    private final String key;
+    private final Path declarationsPath;
+    private final OutputStream declarations;
+    private boolean failed = false;
+    private boolean closed = false;
+
+    private NewEntry(String key, Path declarationsPath, OutputStream declarations) {
+      this.key = key;
+      this.declarationsPath = declarationsPath;
+      this.declarations = declarations;
+    }
+
+    /**
+     * Returns a stream that writes to {@code output}, and also into this entry. Failures to write
+     * the entry do not affect {@code output}, they only prevent the entry from being committed.
+     */
+    OutputStream tee(OutputStream output) {
+      return new FilterOutputStream(output) {
+        @Override
+        public void write(int b) throws IOException {
+          out.write(b);
+          if (!failed) {
+            try {
+              declarations.write(b);
+            } catch (IOException e) {
+              failed = true;
+            }
+          }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          out.write(b, off, len);
+          if (!failed) {
+            try {
+              declarations.write(b, off, len);
+            } catch (IOException e) {
+              failed = true;
+            }
+          }
+        }
+      };
+    }
+
+    /** Stores the entry in the cache, once all declarations were written through the tee. */
+    void commit(String diagnostics, int errorCount) {
+      try {
+        closeDeclarations();
+        if (failed) {
+          return;
+        }
+        Files.move(
+            declarationsPath,
+            directory.resolve(key + DECLARATIONS_SUFFIX),
+            StandardCopyOption.ATOMIC_MOVE);
+        Path metadataPath = Files.createTempFile(directory, key, ".tmp");
+        Files.write(
+            metadataPath, gson.toJson(new Metadata(diagnostics, errorCount)).getBytes(UTF_8));
+        Files.move(
+            metadataPath, directory.resolve(key + METADATA_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+        evictLeastRecentlyUsed();
+      } catch (IOException e) {
+        // Ignored, a later run will just miss the cache.
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        closeDeclarations();
+        Files.deleteIfExists(declarationsPath);
+      } catch (IOException e) {
+        // Ignored, the temporary file is just left behind.
+      }
+    }
+
+    private void closeDeclarations() throws IOException {
+      if (!closed) {
+        closed = true;
+        declarations.close();
+      }
+    }
+  }
+
+  private void evictLeastRecentlyUsed() throws IOException {
+    List<Path> metadataPaths = new ArrayList<>();
+    try (DirectoryStream<Path> stream =
+        Files.newDirectoryStream(directory, "*" + METADATA_SUFFIX)) {
+      stream.forEach(metadataPaths::add);
+    }
+    List<StoredEntry> entries = new ArrayList<>();
+    for (Path metadataPath : metadataPaths) {
+      String fileName = metadataPath.getFileName().toString();
+      String key = fileName.substring(0, fileName.length() - METADATA_SUFFIX.length());
+      Path declarationsPath = directory.resolve(key + DECLARATIONS_SUFFIX);
+      try {
+        long size = Files.size(metadataPath);
+        if (Files.exists(declarationsPath)) {
+          size += Files.size(declarationsPath);
+        }
+        entries.add(
+            new StoredEntry(
+                metadataPath,
+                declarationsPath,
+                Files.getLastModifiedTime(metadataPath).toMillis(),
+                size));
+      } catch (NoSuchFileException e) {
+        // Evicted concurrently by another process.
+      }
+    }
+    entries.sort(Comparator.comparingLong((StoredEntry e) -> e.lastModified).reversed());
+
+    long size = 0;
+    for (StoredEntry entry : entries) {
+      size += entry.size;
+      if (size > maxSizeBytes) {
+        // Delete the metadata first, so that readers never see an entry without declarations.
+        Files.deleteIfExists(entry.metadataPath);
+        Files.deleteIfExists(entry.declarationsPath);
+      }
+    }
+  }
+
+  private static class StoredEntry {
+    private final Path metadataPath;
+    private final Path declarationsPath;
+    private final long lastModified;
+    private final long size;
+
+    private StoredEntry(Path metadataPath, Path declarationsPath, long lastModified, long size) {
+      this.metadataPath = metadataPath;
+      this.declarationsPath = declarationsPath;
+      this.lastModified = lastModified;
+      this.size = size;
+    }
+  }
+
+  private static void putStrings(Hasher hasher, Collection<String> strings) {
+    hasher.putInt(strings.size());
+    for (String s : strings) {
+      putString(hasher, s);
+    }
+  }
+
+  /** Strings are length prefixed, so that consecutive strings cannot run into each other. */
+  private static void putString(Hasher hasher, String s) {
+    hasher.putInt(s.length());
+    hasher.putString(s, UTF_8);
+  }
+}
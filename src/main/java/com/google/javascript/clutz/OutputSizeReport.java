@@ -0,0 +1,144 @@
+package com.google.javascript.clutz;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Attributes the bytes written by an {@link Emitter} to the section of the output, the top-level
+ * symbol and the source file that produced them, for the {@code --size_report} flag.
+ *
+ * <p>The generator announces each top-level symbol before emitting it, and each source file as it
+ * emits its "Generated from" comment. All bytes written from then on, up to the next announcement,
+ * count for that symbol and file. Each shard of a parallel emit has its own report, which is
+ * appended to the report of the main emitter together with the shard's output.
+ */
+final class OutputSizeReport {
+  /** The sections of the output, in the order in which they are emitted. */
+  static final String HEADER = "header";
+
+  static final String PROVIDES = "provides";
+  static final String EXTERN_SYMBOLS = "externSymbols";
+  static final String UNPROVIDED_TYPES = "unprovidedTypes";
+  static final String LEGACY_NAMESPACE_ALIASES = "legacyNamespaceAliases";
+
+  private final Emitter emitter;
+
+  /** (section, symbol, source file) -> row, in the order in which they are first written. */
+  private final Map<List<String>, Row> rows = new LinkedHashMap<>();
+
+  private String section = HEADER;
+  private String symbol = "";
+  private String sourceFile = "";
+
+  /** The byte count of the emitter when the current symbol or source file was announced. */
+  private long startByteCount;
+
+  OutputSizeReport(Emitter emitter) {
+    this.emitter = emitter;
+    this.startByteCount = emitter.getByteCount();
+  }
+
+  /** The bytes emitted for one symbol of a section from one source file, as written to JSON. */
+  static class Row {
+    final String section;
+    final String symbol;
+    final String sourceFile;
+    long bytes = 0;
+
+    private Row(String section, String symbol, String sourceFile) {
+      this.section = section;
+      this.symbol = symbol;
+      this.sourceFile = sourceFile;
+    }
+  }
+
+  /** The report of one run, as written to JSON. */
+  static class Report {
+    long totalBytes = 0;
+    /** Section -> bytes. */
+    Map<String, Long> sections = new LinkedHashMap<>();
+    /** The largest rows first. */
+    List<Row> rows = new ArrayList<>();
+  }
+
+  /**
+   * Attributes the bytes emitted from now on to a top-level symbol of a section, or to the section
+   * itself if {@code symbol} is empty.
+   */
+  void startSymbol(String section, String symbol, @Nullable String sourceFile) {
+    close();
+    this.section = section;
+    this.symbol = symbol;
+    this.sourceFile = sourceFile == null ? "" : sourceFile;
+  }
+
+  /** Attributes the bytes emitted from now on to another source file of the current symbol. */
+  void startSourceFile(@Nullable String sourceFile) {
+    close();
+    this.sourceFile = sourceFile == null ? "" : sourceFile;
+  }
+
+  /**
+   * Adds the rows of a shard whose output was just appended to the emitter, instead of attributing
+   * that output to the current symbol.
+   */
+  void appendShard(OutputSizeReport shard) {
+    shard.close();
+    long end = emitter.getByteCount();
+    addBytes(end - shard.emitter.getByteCount() - startByteCount);
+    for (Row row : shard.rows.values()) {
+      getRow(row.section, row.symbol, row.sourceFile).bytes += row.bytes;
+    }
+    startByteCount = end;
+  }
+
+  Report getReport() {
+    close();
+    Report report = new Report();
+    for (Row row : rows.values()) {
+      if (row.bytes == 0) {
+        continue;
+      }
+      report.totalBytes += row.bytes;
+      report.sections.merge(row.section, row.bytes, Long::sum);
+      report.rows.add(row);
+    }
+    report.rows.sort(Comparator.comparingLong((Row row) -> row.bytes).reversed());
+    return report;
+  }
+
+  static void writeJson(Path path, Report report) throws IOException {
+    Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    Files.write(path, gson.toJson(report).getBytes(UTF_8));
+  }
+
+  /** Attributes the bytes emitted since the last announcement to the current symbol. */
+  private void close() {
+    long end = emitter.getByteCount();
+    addBytes(end - startByteCount);
+    startByteCount = end;
+  }
+
+  private void addBytes(long bytes) {
+    if (bytes > 0) {
+      getRow(section, symbol, sourceFile).bytes += bytes;
+    }
+  }
+
+  private Row getRow(String section, String symbol, String sourceFile) {
+    return rows.computeIfAbsent(
+        Arrays.asList(section, symbol, sourceFile), k -> new Row(section, symbol, sourceFile));
+  }
+}
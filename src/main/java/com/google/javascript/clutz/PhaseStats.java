@@ -0,0 +1,238 @@
+package com.google.javascript.clutz;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.javascript.common.ParallelTasks;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+
+/**
+ * Records the wall time, CPU time and allocated bytes of the phases of a clutz run, for the {@code
+ * --stats} flag.
+ *
+ * <p>CPU time and allocations are measured per thread with {@link ThreadMXBean}. Phases nest, and
+ * the tasks that clutz runs on {@link ParallelTasks} for a phase are wrapped with {@link
+ * #measureForRunningPhase}, so they measure their own threads and add their usage to that phase and
+ * the phases enclosing it. The numbers of a phase thus cover all threads that worked for it.
+ * Measurements the JVM does not support are reported as -1.
+ *
+ * <p>Independently of {@code --stats}, every phase is also a {@link ClutzEvents.Phase} event of JDK
+ * Flight Recorder, if the JDK has it.
+ */
+final class PhaseStats {
+  private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+  /** The innermost phase running on each thread, which parallel tasks started there add to. */
+  private static final ThreadLocal<Phase> runningPhase = new ThreadLocal<>();
+
+  private final boolean enabled;
+  private final List<Phase> phases = new ArrayList<>();
+
+  /** A stats object that is not enabled does not measure anything. */
+  PhaseStats(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Starts a phase on the calling thread, which must close it. Phases are reported in the order in
+   * which they are started.
+   */
+  Phase start(String name) {
+    Phase phase = new Phase(name, enabled ? runningPhase.get() : null);
+    if (enabled) {
+      phases.add(phase);
+      runningPhase.set(phase);
+      phase.begin();
+    }
+    return phase;
+  }
+
+  /** Runs {@code step} as a phase on the calling thread. */
+  void time(String name, Runnable step) {
+    Phase phase = start(name);
+    try {
+      step.run();
+    } finally {
+      phase.close();
+    }
+  }
+
+  /** Runs {@code step} as a phase on the calling thread, and returns its result. */
+  <T> T time(String name, Supplier<T> step) {
+    Phase phase = start(name);
+    try {
+      return step.get();
+    } finally {
+      phase.close();
+    }
+  }
+
+  /**
+   * Wraps a task that is started from the calling thread, so that the CPU time and allocations of
+   * the thread that runs it count for the phase running on the calling thread. Returns the task
+   * itself if no phase is running.
+   */
+  static <T> Callable<T> measureForRunningPhase(Callable<T> task) {
+    Phase phase = runningPhase.get();
+    if (phase == null) {
+      return task;
+    }
+    return () -> {
+      long startCpuNanos = currentThreadCpuNanos();
+      long startAllocatedBytes = currentThreadAllocatedBytes();
+      try {
+        return task.call();
+      } finally {
+        long cpuNanos = elapsed(startCpuNanos, currentThreadCpuNanos());
+        long allocatedBytes = elapsed(startAllocatedBytes, currentThreadAllocatedBytes());
+        for (Phase p = phase; p != null; p = p.parent) {
+          p.addWorkerUsage(cpuNanos, allocatedBytes);
+        }
+      }
+    };
+  }
+
+  /**
+   * Writes the closed phases as JSON to {@code path}. The phase named {@code total} is reported on
+   * its own, the others in a list.
+   */
+  void writeJson(Path path, boolean cacheHit, int parallelism) throws IOException {
+    Report report = new Report(cacheHit, parallelism);
+    for (Phase phase : phases) {
+      if (phase.result == null) {
+        continue;
+      }
+      if (phase.name.equals("total")) {
+        report.total = phase.result;
+      } else {
+        report.phases.add(phase.result);
+      }
+    }
+    Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    Files.write(path, gson.toJson(report).getBytes(UTF_8));
+  }
+
+  /** The stats of one run, as written to JSON. */
+  static class Report {
+    boolean cacheHit;
+    int parallelism;
+    @Nullable PhaseResult total;
+    List<PhaseResult> phases = new ArrayList<>();
+
+    Report(boolean cacheHit, int parallelism) {
+      this.cacheHit = cacheHit;
+      this.parallelism = parallelism;
+    }
+  }
+
+  /** The usage of one phase, as written to JSON. */
+  static class PhaseResult {
+    String name;
+    long wallNanos;
+    long cpuNanos;
+    long allocatedBytes;
+
+    PhaseResult(String name, long wallNanos, long cpuNanos, long allocatedBytes) {
+      this.name = name;
+      this.wallNanos = wallNanos;
+      this.cpuNanos = cpuNanos;
+      this.allocatedBytes = allocatedBytes;
+    }
+  }
+
+  /** A running phase, which is measured until it is closed. */
+  final class Phase implements AutoCloseable {
+    private final String name;
+    @Nullable private final Phase parent;
+
+    private long startWallNanos;
+    private long startCpuNanos;
+    private long startAllocatedBytes;
+
+    /** The usage of parallel tasks, which are added from the threads that ran them. */
+    private long workerCpuNanos = 0;
+
+    private long workerAllocatedBytes = 0;
+
+    @Nullable private PhaseResult result;
+
+    private final ClutzEvents.Phase event = ClutzEvents.beginPhase();
+
+    private Phase(String name, @Nullable Phase parent) {
+      this.name = name;
+      this.parent = parent;
+    }
+
+    private void begin() {
+      startWallNanos = System.nanoTime();
+      startCpuNanos = currentThreadCpuNanos();
+      startAllocatedBytes = currentThreadAllocatedBytes();
+    }
+
+    private synchronized void addWorkerUsage(long cpuNanos, long allocatedBytes) {
+      workerCpuNanos = cpuNanos < 0 || workerCpuNanos < 0 ? -1 : workerCpuNanos + cpuNanos;
+      workerAllocatedBytes =
+          allocatedBytes < 0 || workerAllocatedBytes < 0
+              ? -1
+              : workerAllocatedBytes + allocatedBytes;
+    }
+
+    PhaseResult getResult() {
+      return result;
+    }
+
+    @Override
+    public void close() {
+      if (event.shouldCommit()) {
+        event.commit(name);
+      }
+      if (!enabled) {
+        return;
+      }
+      long wallNanos = System.nanoTime() - startWallNanos;
+      long cpuNanos = elapsed(startCpuNanos, currentThreadCpuNanos());
+      long allocatedBytes = elapsed(startAllocatedBytes, currentThreadAllocatedBytes());
+      synchronized (this) {
+        cpuNanos = cpuNanos < 0 || workerCpuNanos < 0 ? -1 : cpuNanos + workerCpuNanos;
+        allocatedBytes =
+            allocatedBytes < 0 || workerAllocatedBytes < 0
+                ? -1
+                : allocatedBytes + workerAllocatedBytes;
+      }
+      result = new PhaseResult(name, wallNanos, cpuNanos, allocatedBytes);
+      runningPhase.set(parent);
+    }
+  }
+
+  private static long elapsed(long start, long end) {
+    return start < 0 || end < 0 ? -1 : end - start;
+  }
+
+  private static long currentThreadCpuNanos() {
+    if (!THREAD_BEAN.isCurrentThreadCpuTimeSupported()) {
+      return -1;
+    }
+    return THREAD_BEAN.getCurrentThreadCpuTime();
+  }
+
+  private static long currentThreadAllocatedBytes() {
+    if (!(THREAD_BEAN instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_BEAN;
+    if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) {
+      return -1;
+    }
+    return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+}
@@ -0,0 +1,95 @@
+package com.google.javascript.clutz;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Collects the symbols whose declarations took longer to emit than a threshold, for the {@code
+ * --slow_symbol_threshold_ms} flag.
+ *
+ * <p>Symbols are recorded by the tree walker, so the time of a symbol includes the time of the
+ * inner symbols it walks, which may be listed as well. Symbols can be recorded concurrently by the
+ * shards of a parallel emit.
+ */
+final class SlowSymbolLog {
+  private final long thresholdNanos;
+  private final List<Entry> entries = new ArrayList<>();
+
+  SlowSymbolLog(long thresholdMillis) {
+    this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+  }
+
+  /** A symbol over the threshold. */
+  static final class Entry {
+    /** How the symbol was emitted, e.g. {@code walk} or {@code walkInnerSymbols}. */
+    final String kind;
+
+    final String symbol;
+    @Nullable final String sourceFile;
+    final long emittedBytes;
+    final long nanos;
+
+    private Entry(
+        String kind, String symbol, @Nullable String sourceFile, long emittedBytes, long nanos) {
+      this.kind = kind;
+      this.symbol = symbol;
+      this.sourceFile = sourceFile;
+      this.emittedBytes = emittedBytes;
+      this.nanos = nanos;
+    }
+  }
+
+  /** Returns whether a symbol that took {@code nanos} to emit is recorded. */
+  boolean isSlow(long nanos) {
+    return nanos >= thresholdNanos;
+  }
+
+  /** Records the emit of a symbol if it took at least the threshold. */
+  void record(
+      String kind, String symbol, @Nullable String sourceFile, long emittedBytes, long nanos) {
+    if (!isSlow(nanos)) {
+      return;
+    }
+    Entry entry = new Entry(kind, symbol, sourceFile, emittedBytes, nanos);
+    synchronized (entries) {
+      entries.add(entry);
+    }
+  }
+
+  /** Returns the recorded symbols, the slowest first. */
+  List<Entry> getEntries() {
+    List<Entry> sorted;
+    synchronized (entries) {
+      sorted = new ArrayList<>(entries);
+    }
+    sorted.sort(Comparator.comparingLong((Entry e) -> e.nanos).reversed());
+    return sorted;
+  }
+
+  void print(PrintStream out) {
+    List<Entry> sorted = getEntries();
+    out.println(
+        "Symbols slower than "
+            + TimeUnit.NANOSECONDS.toMillis(thresholdNanos)
+            + "ms to emit: "
+            + sorted.size());
+    for (Entry entry : sorted) {
+      out.println(
+          "  "
+              + TimeUnit.NANOSECONDS.toMillis(entry.nanos)
+              + "ms "
+              + entry.kind
+              + " "
+              + entry.symbol
+              + " from "
+              + (entry.sourceFile == null ? "unknown file" : entry.sourceFile)
+              + ", "
+              + entry.emittedBytes
+              + " bytes");
+    }
+  }
+}
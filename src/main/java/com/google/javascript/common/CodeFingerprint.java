@@ -0,0 +1,68 @@
+package com.google.javascript.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hasher;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/** Fingerprints the binaries of clutz, gents and closure for the keys of their output caches. */
+public final class CodeFingerprint {
+  private CodeFingerprint() {}
+
+  /**
+   * Adds the location of the code of {@code clazz} and a fingerprint of that code to {@code
+   * hasher}. A jar is fingerprinted by its size and modification time. A class directory, like the
+   * output of a development build, is fingerprinted by the paths and contents of all its files, as
+   * the modification time of a directory does not change when a file in it is rewritten in place.
+   *
+   * @throws IOException if the code cannot be located or read, in which case nothing that depends
+   *     on it should be cached.
+   */
+  public static void put(Hasher hasher, Class<?> clazz) throws IOException {
+    CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+    if (codeSource == null || codeSource.getLocation() == null) {
+      throw new IOException("Unknown location of the code of " + clazz.getName());
+    }
+    Path location;
+    try {
+      location = Paths.get(codeSource.getLocation().toURI());
+    } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+      throw new IOException("Unsupported location of the code of " + clazz.getName(), e);
+    }
+    put(hasher, location);
+  }
+
+  static void put(Hasher hasher, Path location) throws IOException {
+    putString(hasher, location.toString());
+    if (!Files.isDirectory(location)) {
+      hasher.putLong(Files.size(location));
+      hasher.putLong(Files.getLastModifiedTime(location).toMillis());
+      return;
+    }
+    List<Path> files;
+    try (Stream<Path> paths = Files.walk(location)) {
+      files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+    hasher.putInt(files.size());
+    for (Path file : files) {
+      putString(hasher, location.relativize(file).toString());
+      byte[] content = Files.readAllBytes(file);
+      hasher.putInt(content.length);
+      hasher.putBytes(content);
+    }
+  }
+
+  private static void putString(Hasher hasher, String s) {
+    hasher.putInt(s.length());
+    hasher.putString(s, UTF_8);
+  }
+}
@@ -0,0 +1,33 @@
+package com.google.javascript.common;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * Loads the JDK Flight Recorder events of clutz and gents.
+ *
+ * <p>The events extend {@code jdk.jfr.Event}, which JDK 8 only has from update 262 on. They are
+ * defined in classes named {@code Jfr*Events}, which the build leaves out when it runs on a JDK
+ * without {@code jdk.jfr}, and which the rest of the code only reaches through an interface of its
+ * own. They are loaded by name here, and only if the running JDK has {@code jdk.jfr}, so that
+ * neither compiling nor running on an older JDK needs it.
+ */
+public final class FlightRecorderEvents {
+  private FlightRecorderEvents() {}
+
+  /**
+   * Returns a new instance of the class named {@code className}, which implements {@code type}, or
+   * {@code fallback} if the JDK does not have Flight Recorder or the class was left out of the
+   * build.
+   */
+  public static <T> T load(Class<T> type, String className, T fallback) {
+    try {
+      Class.forName("jdk.jfr.Event");
+      Constructor<? extends T> constructor =
+          Class.forName(className).asSubclass(type).getDeclaredConstructor();
+      constructor.setAccessible(true);
+      return constructor.newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return fallback;
+    }
+  }
+}
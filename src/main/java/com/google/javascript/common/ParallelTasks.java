@@ -0,0 +1,53 @@
+package com.google.javascript.common;
+
+import com.google.common.base.Throwables;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
+
+/** Runs independent tasks on a bounded {@link ForkJoinPool}. */
+public final class ParallelTasks {
+  private ParallelTasks() {}
+
+  /**
+   * Runs the tasks on a pool with the given parallelism and returns their results in task order,
+   * regardless of the order in which they complete. The first failure is rethrown on the calling
+   * thread.
+   */
+  public static <T> List<T> invokeAll(int parallelism, List<Callable<T>> tasks) {
+    return invokeAll(parallelism, tasks, UnaryOperator.identity());
+  }
+
+  /**
+   * Like {@link #invokeAll(int, List)}, but runs each task as wrapped by {@code wrapTask}. The
+   * wrapping happens on the calling thread, so a wrapper can pass state of the calling thread, like
+   * the phase it is measuring, on to the threads of the pool.
+   */
+  public static <T> List<T> invokeAll(
+      int parallelism, List<Callable<T>> tasks, UnaryOperator<Callable<T>> wrapTask) {
+    List<Callable<T>> wrappedTasks = new ArrayList<>();
+    for (Callable<T> task : tasks) {
+      wrappedTasks.add(wrapTask.apply(task));
+    }
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      List<T> results = new ArrayList<>();
+      for (Future<T> result : pool.invokeAll(wrappedTasks)) {
+        results.add(result.get());
+      }
+      return results;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while waiting for parallel tasks", e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new RuntimeException(e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
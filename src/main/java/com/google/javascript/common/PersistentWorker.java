@@ -0,0 +1,116 @@
+package com.google.javascript.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs a command line tool, like clutz or gents, as a Bazel persistent worker, so that a single JVM
+ * (with its loaded classes and JIT state) serves a sequence of requests.
+ *
+ * <p>The worker speaks the JSON flavor of the Bazel worker protocol: it reads a stream of {@code
+ * WorkRequest} objects from stdin and writes one {@code WorkResponse} object per line to stdout.
+ * Each request carries a full command line of the tool in its {@code arguments}, and is run as a
+ * fresh invocation of the tool. The response {@code output} contains everything the tool printed
+ * for the request, diagnostics as well as outputs written to stdout. The protobuf flavor of the
+ * protocol is not supported, the build rule must request {@code requires-worker-protocol: json}.
+ */
+public final class PersistentWorker {
+  /** The flag Bazel passes to a worker binary on startup. */
+  public static final String PERSISTENT_WORKER_FLAG = "--persistent_worker";
+
+  /** A single invocation of the tool, like its {@code main} method with redirected streams. */
+  public interface Command {
+    /** Runs the tool with the given command line, and returns its exit code. */
+    int run(String[] args, PrintStream stdout, PrintStream stderr);
+  }
+
+  private final InputStream in;
+  private final PrintStream out;
+  private final Command command;
+  private final Gson gson = new Gson();
+
+  public PersistentWorker(InputStream in, PrintStream out, Command command) {
+    this.in = in;
+    this.out = out;
+    this.command = command;
+  }
+
+  public static boolean isPersistentWorkerRequested(String[] args) {
+    return Arrays.asList(args).contains(PERSISTENT_WORKER_FLAG);
+  }
+
+  /**
+   * Processes work requests until stdin is closed.
+   *
+   * @return the exit code for the worker process.
+   */
+  public int run() {
+    // Anything written to System.out outside of a work response corrupts the protocol stream, so
+    // redirect stray prints to stderr, which Bazel collects into the worker log.
+    PrintStream originalOut = System.out;
+    System.setOut(System.err);
+    try (JsonReader reader = new JsonReader(new InputStreamReader(in, UTF_8))) {
+      reader.setLenient(true);
+      while (reader.peek() != JsonToken.END_DOCUMENT) {
+        WorkRequest request = gson.fromJson(reader, WorkRequest.class);
+        WorkResponse response = processRequest(request);
+        out.println(gson.toJson(response));
+        out.flush();
+      }
+      return 0;
+    } catch (IOException | RuntimeException e) {
+      e.printStackTrace(System.err);
+      System.err.println("Persistent worker failed to read work requests, exiting.");
+      return 1;
+    } finally {
+      System.setOut(originalOut);
+    }
+  }
+
+  WorkResponse processRequest(WorkRequest request) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    PrintStream stream = newUtf8PrintStream(output);
+    String[] args = request.arguments.toArray(new String[0]);
+
+    WorkResponse response = new WorkResponse();
+    response.requestId = request.requestId;
+    // Diagnostics and output share one stream, like they would on a terminal.
+    response.exitCode = command.run(args, stream, stream);
+    stream.flush();
+    response.output = new String(output.toByteArray(), UTF_8);
+    return response;
+  }
+
+  public static PrintStream newUtf8PrintStream(ByteArrayOutputStream output) {
+    try {
+      return new PrintStream(output, true, UTF_8.name());
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError("UTF-8 is always supported", e);
+    }
+  }
+
+  /** A single unit of work, as sent by Bazel. Unused protocol fields are ignored. */
+  public static class WorkRequest {
+    public List<String> arguments = new ArrayList<>();
+    public int requestId = 0;
+  }
+
+  /** The result of a {@link WorkRequest}. */
+  public static class WorkResponse {
+    public int exitCode;
+    public String output = "";
+    public int requestId;
+  }
+}
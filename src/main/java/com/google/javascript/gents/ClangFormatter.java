@@ -0,0 +1,238 @@
+package com.google.javascript.gents;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.google.javascript.common.ParallelTasks;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Formats generated TypeScript with clang-format.
+ *
+ * <p>Starting clang-format dominates the time it takes to format a single file, so files are
+ * formatted in batches: every batch is written to a temporary directory and formatted in place by a
+ * single clang-format process. Batches are formatted in parallel, up to the given parallelism. If a
+ * batch fails, its files are formatted one process per file instead. A batch that times out is left
+ * unformatted, since formatting its files one by one would wait for the timeout once per file.
+ *
+ * <p>Diagnostics go to the given error stream, which in persistent worker mode is captured into the
+ * work response instead of the worker's stderr.
+ */
+final class ClangFormatter {
+  /** The maximum number of files passed to a single clang-format process. */
+  private static final int BATCH_SIZE = 64;
+
+  private final String binary;
+  private final long timeoutMillis;
+  private final int parallelism;
+  private final PrintStream errStream;
+
+  ClangFormatter(String binary, long timeoutMillis, int parallelism, PrintStream errStream) {
+    this.binary = binary;
+    this.timeoutMillis = timeoutMillis;
+    this.parallelism = parallelism;
+    this.errStream = errStream;
+  }
+
+  /**
+   * Returns the formatted code, in the order of {@code codes}, with null for code that could not be
+   * formatted.
+   */
+  List<String> formatAll(List<String> codes) {
+    return formatAll(codes, new long[codes.size()]);
+  }
+
+  /**
+   * Formats like {@link #formatAll(List)}, and stores the time spent on every code in {@code
+   * formatNanos}. A batch is formatted as a whole, so its time is split over its codes by their
+   * length.
+   */
+  List<String> formatAll(List<String> codes, long[] formatNanos) {
+    List<List<String>> batches = Lists.partition(codes, BATCH_SIZE);
+    List<String> formatted = new ArrayList<>(codes.size());
+    if (parallelism <= 1 || batches.size() <= 1) {
+      for (int i = 0; i < batches.size(); i++) {
+        formatted.addAll(formatBatch(batches.get(i), formatNanos, i * BATCH_SIZE));
+      }
+      return formatted;
+    }
+
+    List<Callable<List<String>>> tasks = new ArrayList<>();
+    for (int i = 0; i < batches.size(); i++) {
+      List<String> batch = batches.get(i);
+      int offset = i * BATCH_SIZE;
+      tasks.add(() -> formatBatch(batch, formatNanos, offset));
+    }
+    for (List<String> batch : ParallelTasks.invokeAll(parallelism, tasks)) {
+      formatted.addAll(batch);
+    }
+    return formatted;
+  }
+
+  /**
+   * Formats a batch, and stores the time spent on its codes at {@code offset} in {@code
+   * formatNanos}.
+   */
+  private List<String> formatBatch(List<String> batch, long[] formatNanos, int offset) {
+    long start = System.nanoTime();
+    List<String> formatted = formatBatch(batch);
+    long nanos = System.nanoTime() - start;
+    long length = 0;
+    for (String code : batch) {
+      length += code.length();
+    }
+    for (int i = 0; i < batch.size(); i++) {
+      formatNanos[offset + i] =
+          length == 0 ? nanos / batch.size() : nanos * batch.get(i).length() / length;
+    }
+    return formatted;
+  }
+
+  private List<String> formatBatch(List<String> batch) {
+    if (batch.size() == 1) {
+      return Lists.newArrayList(format(batch.get(0)));
+    }
+    Path dir = null;
+    try {
+      dir = Files.createTempDirectory("gents-clang-format");
+      List<String> command = Lists.newArrayList(binary, "-i", "-style=Google");
+      List<Path> files = new ArrayList<>();
+      for (int i = 0; i < batch.size(); i++) {
+        // The .ts extension tells clang-format the language, like -assume-filename does.
+        Path file = dir.resolve(i + ".ts");
+        Files.write(file, batch.get(i).getBytes(UTF_8));
+        files.add(file);
+        command.add(file.toString());
+      }
+      Path log = dir.resolve("clang-format.log");
+      Process process =
+          new ProcessBuilder(command)
+              .redirectErrorStream(true)
+              .redirectOutput(log.toFile())
+              .start();
+      process.getOutputStream().close();
+      if (!waitFor(process)) {
+        errStream.println(
+            "clang-format has timed out after "
+                + timeoutMillis
+                + "ms on a batch of "
+                + batch.size()
+                + " files");
+        return Collections.nCopies(batch.size(), null);
+      }
+      if (process.exitValue() != 0) {
+        errStream.println("clang-format has failed on a batch, formatting its files one by one.");
+        errStream.println(new String(Files.readAllBytes(log), UTF_8));
+        return formatOneByOne(batch);
+      }
+      List<String> formatted = new ArrayList<>();
+      for (Path file : files) {
+        formatted.add(new String(Files.readAllBytes(file), UTF_8));
+      }
+      return formatted;
+    } catch (IOException e) {
+      // Most likely clang-format does not exist, which the per file fallback reports.
+      return formatOneByOne(batch);
+    } finally {
+      if (dir != null) {
+        try {
+          MoreFiles.deleteRecursively(dir, RecursiveDeleteOption.ALLOW_INSECURE);
+        } catch (IOException e) {
+          // Ignored, the temporary directory is just left behind.
+        }
+      }
+    }
+  }
+
+  private List<String> formatOneByOne(List<String> batch) {
+    List<String> formatted = new ArrayList<>();
+    for (String code : batch) {
+      formatted.add(format(code));
+    }
+    return formatted;
+  }
+
+  /**
+   * Formats a single file by piping it through clang-format. On failure to format (i.e.
+   * clang-format does not exist or times out), returns null. The filename 'a.ts' is only used to
+   * inform clang-format of the file type (TS).
+   */
+  @Nullable
+  String format(String code) {
+    Path output = null;
+    Path log = null;
+    try {
+      // Both output and errors go to files, so that clang-format never blocks on a full pipe while
+      // the input is still being written, and the timeout covers the whole run.
+      output = Files.createTempFile("gents-clang-format", ".ts");
+      log = Files.createTempFile("gents-clang-format", ".log");
+      Process process =
+          new ProcessBuilder(binary, "-assume-filename=a.ts", "-style=Google")
+              .redirectOutput(output.toFile())
+              .redirectError(log.toFile())
+              .start();
+      try (OutputStream stdin = process.getOutputStream()) {
+        stdin.write(code.getBytes(UTF_8));
+      }
+      if (!waitFor(process)) {
+        errStream.println("clang-format has timed out after " + timeoutMillis + "ms");
+        return null;
+      }
+      printErrors(log);
+      if (process.exitValue() != 0) {
+        errStream.println("clang-format has failed with exit code " + process.exitValue());
+        return null;
+      }
+      return new String(Files.readAllBytes(output), UTF_8);
+    } catch (IOException e) {
+      errStream.println("clang-format has failed to execute: " + e.getMessage());
+      return null;
+    } finally {
+      deleteIfExists(output);
+      deleteIfExists(log);
+    }
+  }
+
+  private void printErrors(Path log) throws IOException {
+    String errors = new String(Files.readAllBytes(log), UTF_8);
+    if (!errors.isEmpty()) {
+      errStream.println(errors);
+    }
+  }
+
+  private static void deleteIfExists(@Nullable Path file) {
+    if (file == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      // Ignored, the temporary file is just left behind.
+    }
+  }
+
+  /** Waits for the process to exit, killing it if it takes longer than the timeout. */
+  private boolean waitFor(Process process) {
+    try {
+      if (process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+        return true;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    process.destroyForcibly();
+    return false;
+  }
+}
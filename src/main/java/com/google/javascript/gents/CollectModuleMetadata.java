@@ -4,6 +4,7 @@ import static com.google.common.base.MoreObjects.firstNonNull;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.hash.Hasher;
 import com.google.javascript.jscomp.AbstractCompiler;
 import com.google.javascript.jscomp.CompilerPass;
 import com.google.javascript.jscomp.JSError;
@@ -11,12 +12,15 @@ import com.google.javascript.jscomp.NodeTraversal;
 import com.google.javascript.jscomp.NodeUtil;
 import com.google.javascript.rhino.JSDocInfo;
 import com.google.javascript.rhino.Node;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import javax.annotation.Nullable;
 
 /**
@@ -26,6 +30,7 @@ import javax.annotation.Nullable;
 public final class CollectModuleMetadata extends AbstractTopLevelCallback implements CompilerPass {
 
   private final AbstractCompiler compiler;
+  private final TraversalScheduler scheduler;
   private final NameUtil nameUtil;
 
   private final Set<String> filesToConvert;
@@ -57,15 +62,40 @@ public final class CollectModuleMetadata extends AbstractTopLevelCallback implem
     return out;
   }
 
-  CollectModuleMetadata(AbstractCompiler compiler, NameUtil nameUtil, Set<String> filesToConvert) {
+  /**
+   * Adds the metadata of all modules to the hasher, for the {@link OutputCache} keys of converted
+   * files.
+   */
+  void putFingerprint(Hasher hasher) {
+    hasher.putInt(fileToModule.size());
+    for (FileModule module : fileToModule.values()) {
+      module.putFingerprint(hasher);
+    }
+    hasher.putInt(namespaceToModule.size());
+    for (Map.Entry<String, FileModule> entry : namespaceToModule.entrySet()) {
+      OutputCache.putString(hasher, entry.getKey());
+      OutputCache.putString(hasher, entry.getValue().file);
+    }
+  }
+
+  CollectModuleMetadata(
+      AbstractCompiler compiler,
+      TraversalScheduler scheduler,
+      NameUtil nameUtil,
+      Set<String> filesToConvert) {
     this.compiler = compiler;
+    this.scheduler = scheduler;
     this.nameUtil = nameUtil;
     this.filesToConvert = filesToConvert;
   }
 
   @Override
   public void process(Node externs, Node root) {
-    NodeTraversal.traverse(compiler, root, this);
+    scheduler.walk("CollectModuleMetadata", root, this);
+    // Names are only resolved once all exports of the files are known.
+    for (FileModule module : fileToModule.values()) {
+      module.registerInterfaceTypedefs();
+    }
   }
 
   @Override
@@ -123,6 +153,7 @@ public final class CollectModuleMetadata extends AbstractTopLevelCallback implem
         JSDocInfo jsdoc = NodeUtil.getBestJSDocInfo(n);
         if (jsdoc != null && jsdoc.containsTypeDefinition() && module != null) {
           module.maybeAddExport(child);
+          module.maybeAddInterfaceTypedef(child);
         }
         break;
       case ASSIGN:
@@ -134,6 +165,7 @@ public final class CollectModuleMetadata extends AbstractTopLevelCallback implem
         if (maybeExportNode == null) {
           break;
         }
+        module.maybeAddInterfaceTypedef(maybeExportNode);
         String maybeExportString = maybeExportNode.getQualifiedName();
         if (maybeExportString != null
             && (maybeExportString.equals("exports")
@@ -286,6 +318,12 @@ public final class CollectModuleMetadata extends AbstractTopLevelCallback implem
      */
     final Map<String, String> importedNamespacesToSymbols = new LinkedHashMap<>();
 
+    /**
+     * Qualified names of the class inner typedefs of object types, which {@link TypeConversionPass}
+     * converts into interfaces named after the last step of the name.
+     */
+    private final List<String> interfaceTypedefs = new ArrayList<>();
+
     FileModule(String file, boolean isGoogModule) {
       this.file = file;
       this.isGoogModule = isGoogModule;
@@ -297,6 +335,18 @@ public final class CollectModuleMetadata extends AbstractTopLevelCallback implem
       return isJsLibrary;
     }
 
+    private void putFingerprint(Hasher hasher) {
+      OutputCache.putString(hasher, file);
+      hasher.putBoolean(isJsLibrary);
+      hasher.putBoolean(isGoogModule);
+      hasher.putBoolean(hasImports);
+      OutputCache.putString(hasher, new TreeSet<>(jsNamespaces).toString());
+      OutputCache.putMap(hasher, namespaceHasDefaultExport);
+      OutputCache.putMap(hasher, providesObjectChildren);
+      OutputCache.putMap(hasher, exportedNamespacesToSymbols);
+      OutputCache.putMap(hasher, importedNamespacesToSymbols);
+    }
+
     /** Returns if the file actually exports any symbols. */
     boolean hasExports() {
       return !exportedNamespacesToSymbols.isEmpty();
@@ -380,6 +430,60 @@ public final class CollectModuleMetadata extends AbstractTopLevelCallback implem
       }
     }
 
+    private void maybeAddInterfaceTypedef(Node name) {
+      String qualifiedName = name.getQualifiedName();
+      JSDocInfo jsdoc = NodeUtil.getBestJSDocInfo(name);
+      if (name.isGetProp()
+          && qualifiedName != null
+          && jsdoc != null
+          && jsdoc.hasTypedefType()
+          && TypeConversionPass.containsObject(jsdoc.getTypedefType().getRoot())) {
+        interfaceTypedefs.add(qualifiedName);
+      }
+    }
+
+    /**
+     * Puts the interfaces converted from class inner typedefs into importedNamespacesToSymbols, so
+     * that TypeAnnotationPass can fix all references across multiple files importing the type and
+     * create import statements if needed.
+     *
+     * <p>The interfaces are registered under the names that the typedefs have by the time the file
+     * is converted: ModuleConversionPass replaces the longest exported prefix of a name with its
+     * symbol, and turns a typedef whose whole name is exported into an export instead.
+     *
+     * <p>TODO(bowenni): If the type to rename is exported as an alias then the references in other
+     * files will not get renamed.
+     *
+     * <pre>
+     * goog.module('A');
+     * exports.alias = typeToRename;
+     *
+     * goog.require('A');
+     * {@literal @}typedef {A.alias};
+     * </pre>
+     *
+     * In this case the child module won't rename 'A.alias' because the child module is expecting to
+     * rename 'typeToRename'
+     */
+    private void registerInterfaceTypedefs() {
+      if (isJsLibrary) {
+        return;
+      }
+      NamespaceTrie exportedNamespaces = new NamespaceTrie(exportedNamespacesToSymbols.keySet());
+      for (String name : interfaceTypedefs) {
+        String exportedNamespace = exportedNamespaces.findLongestPrefix(name);
+        if (name.equals(exportedNamespace)) {
+          continue;
+        }
+        String convertedName =
+            exportedNamespace == null
+                ? name
+                : nameUtil.replacePrefixInName(
+                    name, exportedNamespace, exportedNamespacesToSymbols.get(exportedNamespace));
+        importedNamespacesToSymbols.put(convertedName, nameUtil.lastStepOfName(name));
+      }
+    }
+
     private void addExport(String exportName, String importName, String identifier) {
       exportedNamespacesToSymbols.put(exportName, identifier);
       importedNamespacesToSymbols.put(importName, identifier);
@@ -0,0 +1,577 @@
+package com.google.javascript.gents;
+
+import com.google.javascript.jscomp.parsing.parser.trees.Comment.Type;
+
+/**
+ * Removes unneeded tags and markers from comments.
+ *
+ * <p>JSDoc comments lose the type annotations and tags that the TypeScript code expresses, along
+ * with the lines that only held them. Other comments lose their {@code // goog.scope} markers.
+ * Comments that are left without content are dropped entirely.
+ *
+ * <p>Heavily documented Closure code has more comment text than code, so comments are scanned by
+ * hand rather than with regular expressions. A comment is rewritten in place, in a single buffer:
+ * every step scans it once, jumping from one tag (or type) to the next, and only moves the text
+ * after the first match. The rules are applied one after the other, as removing a tag can join
+ * lines and change what the next rule sees.
+ */
+final class CommentFilter {
+  /** The rules for tags in JSDoc comments, in the order in which they are applied. */
+  private enum Rule {
+    /** Removes {@code @param {type} name} if there is no description. */
+    PARAM_WITHOUT_DESCRIPTION,
+    /** Removes {@code @return {type}} if there is no description. */
+    RETURN_WITHOUT_DESCRIPTION,
+    /** Removes the type of {@code @param} and {@code @return}. */
+    PARAM_OR_RETURN_TYPE,
+    /** Removes the type of {@code @export}. */
+    EXPORT_TYPE,
+    /** Removes {@code @extends}, {@code @implements} and {@code @type} with their type. */
+    TYPE_ANNOTATION,
+    /** Removes {@code @constructor}, {@code @interface} and {@code @record}. */
+    CLASS_KIND,
+    /** Removes access modifiers, {@code @const} and {@code @enum}, with their type. */
+    MODIFIER,
+    /** Removes {@code @suppress {extraRequire}}. */
+    SUPPRESS_EXTRA_REQUIRE,
+    /** Removes {@code @typedef} with its type. */
+    TYPEDEF,
+    /** Removes {@code @abstract}. */
+    ABSTRACT
+  }
+
+  private static final Rule[] RULES = Rule.values();
+
+  private static final String EXTRA_REQUIRE = "{extraRequire}";
+
+  /** Removes unneeded tags and markers from the comment. */
+  static String filter(Type type, String comment) {
+    CommentFilter filter = new CommentFilter(comment);
+    if (type == Type.JSDOC) {
+      // Explanatory text can only follow on the next line if there is one.
+      if (comment.indexOf('\n') != -1) {
+        filter.joinTextAfterTypes();
+        filter.joinTextAfterNames();
+      }
+      for (Rule rule : RULES) {
+        filter.removeMatches(rule);
+      }
+    } else {
+      filter.removeGoogScopeMarkers();
+    }
+    return filter.isWhitespaceOnly() ? "" : new String(filter.buf, 0, filter.length);
+  }
+
+  /**
+   * The comment being rewritten. Every step reads the text from front to back and writes its result
+   * behind where it reads, so the comment is never copied.
+   */
+  private final char[] buf;
+
+  /** The length of the text in the buffer. */
+  private int length;
+
+  /** Where the text of the last match that is kept starts. */
+  private int keepStart;
+
+  /** Where the text of the last match that is kept ends. */
+  private int keepEnd;
+
+  /** Whether the last match ended with the end of its line. */
+  private boolean matchedEndOfLine;
+
+  private CommentFilter(String comment) {
+    this.buf = comment.toCharArray();
+    this.length = buf.length;
+  }
+
+  /**
+   * Joins explanatory text that follows a type on the next line onto the line of the type, so
+   * {@code @foo {type} \n * Explanation} becomes {@code @foo {type} Explanation}. Otherwise the
+   * explanatory text would be kept, while the tag it explains is removed.
+   *
+   * <p>Explanatory text is indented by at least two spaces after the {@code *} of its line, and
+   * does not start with {@code @}, {@code ,} or {@code /}. This distinguishes it from the next tag
+   * and the end of the comment.
+   */
+  private void joinTextAfterTypes() {
+    int w = 0;
+    int r = 0;
+    for (int brace = indexOf('}', 0); brace < length; brace = indexOf('}', brace + 1)) {
+      int star = skipWhitespace(brace + 1);
+      if (star == length || buf[star] != '*') {
+        continue;
+      }
+      int text = skipWhitespace(star + 1);
+      if (text - star <= 2 || text == length || isJoinStop(buf[text])) {
+        continue;
+      }
+      int textEnd = skipNonWhitespace(text);
+      w = move(r, brace + 1, w);
+      buf[w++] = ' ';
+      w = move(text, textEnd, w);
+      r = textEnd;
+      brace = textEnd - 1;
+    }
+    length = move(r, length, w);
+  }
+
+  /**
+   * Joins explanatory text that follows a type and a name on the next line onto the line of the
+   * name, so {@code @foo {type} name \n * Explanation} becomes {@code @foo {type} name
+   * Explanation}.
+   *
+   * <p>As after types, explanatory text is indented by at least two spaces, which must be on the
+   * line of the {@code *}.
+   */
+  private void joinTextAfterNames() {
+    int w = 0;
+    int r = 0;
+    for (int brace = indexOf('}', 0); brace < length; brace = indexOf('}', brace + 1)) {
+      int name = skipWhitespace(brace + 1);
+      int nameEnd = skipNonWhitespace(name);
+      if (name == brace + 1 || nameEnd == name) {
+        continue;
+      }
+      int star = skipWhitespace(nameEnd);
+      int end;
+      if (star < length && buf[star] == '*' && skipIndent(star + 1) - star > 2) {
+        end = skipIndent(star + 1);
+      } else if (nameEnd - name > 1
+          && buf[nameEnd - 1] == '*'
+          && skipIndent(nameEnd) - nameEnd > 1) {
+        // The * directly follows the name, as in `} name*  Explanation`.
+        end = skipIndent(nameEnd);
+        nameEnd--;
+      } else {
+        continue;
+      }
+      w = move(r, brace + 1, w);
+      buf[w++] = ' ';
+      w = move(name, nameEnd, w);
+      buf[w++] = ' ';
+      r = end;
+      brace = end - 1;
+    }
+    length = move(r, length, w);
+  }
+
+  /**
+   * Removes all matches of the rule. Whether a match is removed with the {@code *} that starts its
+   * line, or only the text that follows the {@code *}, is decided by the first match, for all
+   * matches of the comment.
+   */
+  private void removeMatches(Rule rule) {
+    Boolean removeLineStart = null;
+    int w = 0;
+    int r = 0;
+    for (int tag = indexOf('@', 0); tag < length; tag = indexOf('@', tag + 1)) {
+      int end = match(rule, tag);
+      if (end == -1) {
+        continue;
+      }
+      w = move(r, tag, w);
+      if (removeLineStart == null) {
+        removeLineStart = keepEnd == keepStart ? matchedEndOfLine : isBlank(keepStart, keepEnd);
+      }
+      if (removeLineStart) {
+        // The start of the line can't extend into the previous match.
+        w = lineStart(w, w - (tag - r));
+      } else {
+        w = move(keepStart, keepEnd, w);
+      }
+      r = end;
+      tag = end - 1;
+    }
+    length = move(r, length, w);
+  }
+
+  /**
+   * Returns the end of the match of the rule for the tag at {@code tag}, or -1 if it does not
+   * match. Sets the kept text and whether the match ended its line.
+   */
+  private int match(Rule rule, int tag) {
+    int name = tag + 1;
+    keepStart = keepEnd = tag;
+    matchedEndOfLine = false;
+    switch (rule) {
+      case PARAM_WITHOUT_DESCRIPTION:
+        return startsWith(name, "param") ? paramWithoutDescription(name + 5) : -1;
+      case RETURN_WITHOUT_DESCRIPTION:
+        return startsWith(name, "return") ? returnWithoutDescription(returnEnd(name)) : -1;
+      case PARAM_OR_RETURN_TYPE:
+        if (startsWith(name, "param")) {
+          return typeOnLineEnd(tag, name + 5);
+        }
+        return startsWith(name, "return") ? typeOnLineEnd(tag, returnEnd(name)) : -1;
+      case EXPORT_TYPE:
+        return startsWith(name, "export") ? typeOnLineEnd(tag, name + 6) : -1;
+      case TYPE_ANNOTATION:
+        {
+          int type = skipSpacesAndTabs(tagEnd(name, "extends", "implements", "type"));
+          if (type == -1 || type == length || buf[type] != '{') {
+            return -1;
+          }
+          // The type may span lines, up to the next tag.
+          int typeEnd = lastIndexOf('}', type + 1, indexOf('@', type + 1));
+          return typeEnd == -1 ? -1 : endOfLine(skipSpacesAndTabs(typeEnd + 1));
+        }
+      case CLASS_KIND:
+        {
+          int nameEnd = tagEnd(name, "constructor", "interface", "record");
+          return nameEnd == -1 ? -1 : endOfLine(skipSpacesAndTabs(nameEnd));
+        }
+      case MODIFIER:
+        {
+          int nameEnd = tagEnd(name, "private", "protected", "public", "package", "const", "enum");
+          if (nameEnd == -1) {
+            return -1;
+          }
+          int end = skipSpacesAndTabs(nameEnd);
+          if (end < length && buf[end] == '{') {
+            int typeEnd = lastIndexOf('}', end + 1, lineEnd(end + 1));
+            if (typeEnd != -1) {
+              end = skipSpacesAndTabs(typeEnd + 1);
+            }
+          }
+          return endOfLine(end);
+        }
+      case SUPPRESS_EXTRA_REQUIRE:
+        {
+          if (!startsWith(name, "suppress")) {
+            return -1;
+          }
+          int type = skipSpacesAndTabs(name + 8);
+          return startsWith(type, EXTRA_REQUIRE)
+              ? endOfLine(skipSpacesAndTabs(type + EXTRA_REQUIRE.length()))
+              : -1;
+        }
+      case TYPEDEF:
+        {
+          if (!startsWith(name, "typedef")) {
+            return -1;
+          }
+          int type = skipSpacesAndTabs(name + 7);
+          if (type == length || buf[type] != '{') {
+            return -1;
+          }
+          // The type extends to the last } of the comment.
+          int typeEnd = lastIndexOf('}', type + 1, length);
+          if (typeEnd == -1) {
+            return -1;
+          }
+          int end = endOfLine(skipSpacesAndTabs(typeEnd + 1));
+          return matchedEndOfLine ? end : typeEnd + 1;
+        }
+      case ABSTRACT:
+        {
+          if (!startsWith(name, "abstract")) {
+            return -1;
+          }
+          int end = endOfLine(skipSpacesAndTabs(name + 8));
+          return matchedEndOfLine ? end : name + 8;
+        }
+    }
+    throw new AssertionError(rule);
+  }
+
+  /**
+   * Returns the end of {@code @param {type} name} that is followed by the end of the line or the
+   * comment, which is kept, or -1 if there is a description. The type may span lines, up to the
+   * next tag.
+   */
+  private int paramWithoutDescription(int nameEnd) {
+    int type = skipSpacesAndTabs(nameEnd);
+    if (type == length || buf[type] != '{') {
+      return -1;
+    }
+    int nextTag = indexOf('@', type + 1);
+    for (int typeEnd = lastIndexOf('}', type + 1, nextTag);
+        typeEnd != -1;
+        typeEnd = lastIndexOf('}', type + 1, typeEnd)) {
+      int param = skipSpacesAndTabs(typeEnd + 1);
+      int paramEnd = param;
+      while (paramEnd < length && isIdentifierChar(buf[paramEnd])) {
+        paramEnd++;
+      }
+      if (paramEnd > param) {
+        int end = endOfLineOrComment(skipSpacesAndTabs(paramEnd));
+        if (end != -1) {
+          return end;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the end of {@code @return {type}} that is followed by the end of the line or the
+   * comment, which is kept, or -1 if there is a description.
+   */
+  private int returnWithoutDescription(int nameEnd) {
+    int type = skipSpacesAndTabs(nameEnd);
+    if (type == length || buf[type] != '{') {
+      return -1;
+    }
+    for (int typeEnd = lastIndexOf('}', type + 1, lineEnd(type + 1));
+        typeEnd != -1;
+        typeEnd = lastIndexOf('}', type + 1, typeEnd)) {
+      int end = endOfLineOrComment(skipSpacesAndTabs(typeEnd + 1));
+      if (end != -1) {
+        return end;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the end of the type that follows the tag name ending at {@code nameEnd}, up to the last
+   * } of the line, or -1 if there is none. The tag is kept.
+   */
+  private int typeOnLineEnd(int tag, int nameEnd) {
+    int type = skipSpacesAndTabs(nameEnd);
+    if (type == length || buf[type] != '{') {
+      return -1;
+    }
+    int typeEnd = lastIndexOf('}', type + 1, lineEnd(type + 1));
+    if (typeEnd == -1) {
+      return -1;
+    }
+    keepStart = tag;
+    keepEnd = nameEnd;
+    return typeEnd + 1;
+  }
+
+  /** Returns the end of {@code return} or {@code returns} at {@code name}. */
+  private int returnEnd(int name) {
+    return startsWith(name + 6, "s") ? name + 7 : name + 6;
+  }
+
+  /**
+   * Returns the end of the line or the comment that ends at {@code i}, which is kept, or -1 if
+   * neither ends there.
+   */
+  private int endOfLineOrComment(int i) {
+    int end;
+    if (startsWith(i, "*/")) {
+      end = i + 2;
+    } else if (i < length && buf[i] == '\n') {
+      end = i + 1;
+    } else {
+      return -1;
+    }
+    keepStart = i;
+    keepEnd = end;
+    return end;
+  }
+
+  /** Returns the end of the line if it ends at {@code i}, or {@code i}. */
+  private int endOfLine(int i) {
+    matchedEndOfLine = i < length && buf[i] == '\n';
+    return matchedEndOfLine ? i + 1 : i;
+  }
+
+  /**
+   * Returns where the start of a JSDoc line, a {@code *} surrounded by spaces, begins before {@code
+   * end}, but not before {@code bound}. Returns {@code end} if there is none.
+   */
+  private int lineStart(int end, int bound) {
+    int start = end;
+    while (start > bound && isSpaceOrTab(buf[start - 1])) {
+      start--;
+    }
+    if (start == bound || buf[start - 1] != '*') {
+      return end;
+    }
+    start--;
+    while (start > bound && isSpaceOrTab(buf[start - 1])) {
+      start--;
+    }
+    return start;
+  }
+
+  /** Removes the {@code // goog.scope} markers of a comment that is not JSDoc. */
+  private void removeGoogScopeMarkers() {
+    int w = 0;
+    int r = 0;
+    for (int slash = indexOf('/', 0); slash < length; slash = indexOf('/', slash + 1)) {
+      if (!startsWith(slash + 1, "/")) {
+        continue;
+      }
+      int goog = skipWhitespace(slash + 2);
+      if (startsWith(goog, "goog")
+          && goog + 4 < length
+          && !isLineTerminator(buf[goog + 4])
+          && startsWith(goog + 5, "scope")) {
+        w = move(r, slash, w);
+        r = skipWhitespace(goog + 10);
+        slash = r - 1;
+      }
+    }
+    length = move(r, length, w);
+  }
+
+  /**
+   * Returns if the comment is empty but for its markers, i.e. it is {@code //} or {@code /*}
+   * followed by {@code *}s and whitespace.
+   */
+  private boolean isWhitespaceOnly() {
+    int start = skipWhitespace(0);
+    int end = length;
+    // The comment may end with a line terminator that is not whitespace.
+    if (end > start && isLineTerminator(buf[end - 1]) && !isWhitespace(buf[end - 1])) {
+      end--;
+    }
+    while (end > start && isWhitespace(buf[end - 1])) {
+      end--;
+    }
+    if (end - start == 2 && startsWith(start, "//")) {
+      return true;
+    }
+    if (end - start < 4 || !startsWith(start, "/*") || !startsWith(end - 2, "*/")) {
+      return false;
+    }
+    for (int i = start + 2; i < end - 2; i++) {
+      if (buf[i] != '*' && !isWhitespace(buf[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Moves the text from {@code start} to {@code end} to {@code dest}, and returns the end of the
+   * moved text.
+   */
+  private int move(int start, int end, int dest) {
+    if (start != dest) {
+      System.arraycopy(buf, start, buf, dest, end - start);
+    }
+    return dest + end - start;
+  }
+
+  /**
+   * Returns the end of the tag name at {@code name}, if it starts with one of the given names, or
+   * -1.
+   */
+  private int tagEnd(int name, String... names) {
+    for (String tag : names) {
+      if (startsWith(name, tag)) {
+        return name + tag.length();
+      }
+    }
+    return -1;
+  }
+
+  private boolean startsWith(int i, String s) {
+    if (i < 0 || i + s.length() > length) {
+      return false;
+    }
+    for (int j = 0; j < s.length(); j++) {
+      if (buf[i + j] != s.charAt(j)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isBlank(int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (buf[i] > ' ') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the first {@code c} from {@code from}, or the length of the text if there is none. */
+  private int indexOf(char c, int from) {
+    int i = from;
+    while (i < length && buf[i] != c) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Returns the last {@code c} from {@code from} and before {@code end}, or -1 if there is none.
+   */
+  private int lastIndexOf(char c, int from, int end) {
+    for (int i = end - 1; i >= from; i--) {
+      if (buf[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Returns the end of the line from {@code from}, which is the length of the text at the end. */
+  private int lineEnd(int from) {
+    int i = from;
+    while (i < length && !isLineTerminator(buf[i])) {
+      i++;
+    }
+    return i;
+  }
+
+  private int skipWhitespace(int from) {
+    int i = from;
+    while (i < length && isWhitespace(buf[i])) {
+      i++;
+    }
+    return i;
+  }
+
+  private int skipNonWhitespace(int from) {
+    int i = from;
+    while (i < length && !isWhitespace(buf[i])) {
+      i++;
+    }
+    return i;
+  }
+
+  private int skipSpacesAndTabs(int from) {
+    if (from == -1) {
+      return -1;
+    }
+    int i = from;
+    while (i < length && isSpaceOrTab(buf[i])) {
+      i++;
+    }
+    return i;
+  }
+
+  /** Skips whitespace that does not end the line. */
+  private int skipIndent(int from) {
+    int i = from;
+    while (i < length && isWhitespace(buf[i]) && buf[i] != '\n' && buf[i] != '\r') {
+      i++;
+    }
+    return i;
+  }
+
+  /** Returns if explanatory text cannot start with the character. */
+  private static boolean isJoinStop(char c) {
+    return c == '@' || c == ',' || c == '/';
+  }
+
+  private static boolean isSpaceOrTab(char c) {
+    return c == ' ' || c == '\t';
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  private static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  private static boolean isIdentifierChar(char c) {
+    return (c >= 'a' && c <= 'z')
+        || (c >= 'A' && c <= 'Z')
+        || (c >= '0' && c <= '9')
+        || c == '_'
+        || c == '$';
+  }
+}
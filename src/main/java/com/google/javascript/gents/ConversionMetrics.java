@@ -0,0 +1,175 @@
+package com.google.javascript.gents;
+
+import com.google.common.base.Utf8;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.javascript.rhino.Node;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects where a gents run spends its time, for the {@code --metrics} report: the whole-program
+ * phases, and for every converted file the time of each pass, of the code generation and of
+ * clang-format, together with the size of its input, output and AST.
+ *
+ * <p>The entries of all files are created before the conversion starts. Afterwards every file's
+ * entry is only modified by the thread converting that file, so files can be converted in parallel.
+ *
+ * <p>Every timed phase and pass is also a {@link GentsEvents.Pass} event of JDK Flight Recorder, if
+ * the JDK has it.
+ */
+final class ConversionMetrics {
+  /** The number of slowest files listed in the summary. */
+  private static final int SLOWEST_FILES = 10;
+
+  /** The metrics of a single file. Times are in nanoseconds, sizes in UTF-8 bytes. */
+  static class FileMetrics {
+    final String file;
+    long inputBytes = 0;
+    long outputBytes = 0;
+    int astNodes = 0;
+    int linkedComments = 0;
+    /** Whether the conversion was taken from the cache, in which case the passes were skipped. */
+    boolean cached = false;
+    /** Pass name -> time, in the order in which the passes ran. */
+    final Map<String, Long> passNanos = new LinkedHashMap<>();
+
+    long codegenNanos = 0;
+    long clangFormatNanos = 0;
+
+    FileMetrics(String file) {
+      this.file = file;
+    }
+
+    /** Runs a pass over the file, and records its time. */
+    void time(String pass, Runnable step) {
+      GentsEvents.Pass event = GentsEvents.beginPass();
+      long start = System.nanoTime();
+      step.run();
+      passNanos.merge(pass, System.nanoTime() - start, Long::sum);
+      if (event.shouldCommit()) {
+        event.commit(pass, file);
+      }
+    }
+
+    long getTotalNanos() {
+      long total = codegenNanos + clangFormatNanos;
+      for (long nanos : passNanos.values()) {
+        total += nanos;
+      }
+      return total;
+    }
+  }
+
+  /** Phase name -> time of the phases that process the whole program at once. */
+  private final Map<String, Long> programNanos = new LinkedHashMap<>();
+
+  /** Source file name -> metrics, in input order. */
+  private final Map<String, FileMetrics> files = new LinkedHashMap<>();
+
+  /** Runs a phase over the whole program, and records its time. */
+  void time(String phase, Runnable step) {
+    GentsEvents.Pass event = GentsEvents.beginPass();
+    long start = System.nanoTime();
+    step.run();
+    programNanos.merge(phase, System.nanoTime() - start, Long::sum);
+    if (event.shouldCommit()) {
+      event.commit(phase, "");
+    }
+  }
+
+  /** Adds the entry of a file, with the size of its input. Not thread-safe. */
+  void addFile(String file, CharSequence source) {
+    FileMetrics metrics = new FileMetrics(file);
+    metrics.inputBytes = Utf8.encodedLength(source);
+    files.put(file, metrics);
+  }
+
+  FileMetrics getFile(String file) {
+    return files.get(file);
+  }
+
+  /** Returns the number of nodes of the AST rooted at {@code n}. */
+  static int countNodes(Node n) {
+    int count = 1;
+    for (Node child : n.children()) {
+      count += countNodes(child);
+    }
+    return count;
+  }
+
+  String toJson() {
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("programNanos", programNanos);
+    report.put("files", new ArrayList<>(files.values()));
+    Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    return gson.toJson(report);
+  }
+
+  /**
+   * Prints the total time of every phase and pass over all files, the total sizes, and the files
+   * that took longest. With parallelism, the times of files that were converted concurrently add
+   * up.
+   */
+  void printSummary(PrintStream out) {
+    Map<String, Long> passNanos = new LinkedHashMap<>();
+    long codegenNanos = 0;
+    long clangFormatNanos = 0;
+    long inputBytes = 0;
+    long outputBytes = 0;
+    long astNodes = 0;
+    long linkedComments = 0;
+    int cachedFiles = 0;
+    for (FileMetrics file : files.values()) {
+      for (Map.Entry<String, Long> pass : file.passNanos.entrySet()) {
+        passNanos.merge(pass.getKey(), pass.getValue(), Long::sum);
+      }
+      codegenNanos += file.codegenNanos;
+      clangFormatNanos += file.clangFormatNanos;
+      inputBytes += file.inputBytes;
+      outputBytes += file.outputBytes;
+      astNodes += file.astNodes;
+      linkedComments += file.linkedComments;
+      cachedFiles += file.cached ? 1 : 0;
+    }
+
+    out.println(
+        "Conversion metrics: "
+            + files.size()
+            + " files ("
+            + cachedFiles
+            + " cached), "
+            + inputBytes
+            + " input bytes, "
+            + outputBytes
+            + " output bytes, "
+            + astNodes
+            + " AST nodes, "
+            + linkedComments
+            + " linked comments");
+    for (Map.Entry<String, Long> phase : programNanos.entrySet()) {
+      printTime(out, phase.getKey(), phase.getValue());
+    }
+    for (Map.Entry<String, Long> pass : passNanos.entrySet()) {
+      printTime(out, pass.getKey(), pass.getValue());
+    }
+    printTime(out, "codegen", codegenNanos);
+    printTime(out, "clang-format", clangFormatNanos);
+
+    List<FileMetrics> slowest = new ArrayList<>(files.values());
+    slowest.sort(Comparator.comparingLong(FileMetrics::getTotalNanos).reversed());
+    out.println("Slowest files:");
+    for (FileMetrics file : slowest.subList(0, Math.min(SLOWEST_FILES, slowest.size()))) {
+      printTime(out, file.file, file.getTotalNanos());
+    }
+  }
+
+  private static void printTime(PrintStream out, String name, long nanos) {
+    out.println("  " + name + ": " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms");
+  }
+}
@@ -0,0 +1,77 @@
+package com.google.javascript.gents;
+
+import com.google.javascript.common.FlightRecorderEvents;
+
+/**
+ * JDK Flight Recorder events of gents, which show in a recording which passes and files cost the
+ * most to convert.
+ *
+ * <p>An event is begun when the work it covers starts. When the work ends, its fields are only set
+ * and it is only committed if {@link Event#shouldCommit} returns true, which without an active
+ * recording is never the case. The events are defined in {@link JfrGentsEvents}, which is loaded by
+ * {@link FlightRecorderEvents} only if the JDK has Flight Recorder. Otherwise every event is a
+ * shared instance that is never committed.
+ */
+final class GentsEvents {
+  private static final Factory FACTORY =
+      FlightRecorderEvents.load(
+          Factory.class, "com.google.javascript.gents.JfrGentsEvents", new NoEvents());
+
+  private GentsEvents() {}
+
+  /** A begun event. */
+  interface Event {
+    /** Returns whether the event is recorded, and so needs its fields. */
+    boolean shouldCommit();
+  }
+
+  /** A compiler pass of gents, over a single file or over the whole program. */
+  interface Pass extends Event {
+    /** Commits the event, with an empty {@code file} for passes over the whole program. */
+    void commit(String pass, String file);
+  }
+
+  /** The generation of the TypeScript code of a converted file. */
+  interface Codegen extends Event {
+    void commit(String file);
+  }
+
+  /** Begins the events, implemented by {@link JfrGentsEvents}. */
+  interface Factory {
+    Pass beginPass();
+
+    Codegen beginCodegen();
+  }
+
+  static Pass beginPass() {
+    return FACTORY.beginPass();
+  }
+
+  static Codegen beginCodegen() {
+    return FACTORY.beginCodegen();
+  }
+
+  /** The events without Flight Recorder, which are never committed. */
+  private static final class NoEvents implements Factory, Pass, Codegen {
+    @Override
+    public Pass beginPass() {
+      return this;
+    }
+
+    @Override
+    public Codegen beginCodegen() {
+      return this;
+    }
+
+    @Override
+    public boolean shouldCommit() {
+      return false;
+    }
+
+    @Override
+    public void commit(String pass, String file) {}
+
+    @Override
+    public void commit(String file) {}
+  }
+}
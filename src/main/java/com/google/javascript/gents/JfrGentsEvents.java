@@ -0,0 +1,65 @@
+package com.google.javascript.gents;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The {@link GentsEvents} as events of JDK Flight Recorder. This class needs {@code jdk.jfr}, and
+ * must only be loaded through {@link com.google.javascript.common.FlightRecorderEvents}.
+ */
+final class JfrGentsEvents implements GentsEvents.Factory {
+  @Override
+  public GentsEvents.Pass beginPass() {
+    Pass event = new Pass();
+    event.begin();
+    return event;
+  }
+
+  @Override
+  public GentsEvents.Codegen beginCodegen() {
+    Codegen event = new Codegen();
+    event.begin();
+    return event;
+  }
+
+  @Name("com.google.javascript.gents.Pass")
+  @Label("Gents Pass")
+  @Description("A compiler pass of gents, over a single file or over the whole program")
+  @Category("Gents")
+  @StackTrace(false)
+  static final class Pass extends Event implements GentsEvents.Pass {
+    @Label("Pass")
+    String pass;
+
+    @Label("Source File")
+    @Description("The converted file, or empty for passes over the whole program")
+    String file;
+
+    @Override
+    public void commit(String pass, String file) {
+      this.pass = pass;
+      this.file = file;
+      commit();
+    }
+  }
+
+  @Name("com.google.javascript.gents.Codegen")
+  @Label("Gents Codegen")
+  @Description("The generation of the TypeScript code of a converted file")
+  @Category("Gents")
+  @StackTrace(false)
+  static final class Codegen extends Event implements GentsEvents.Codegen {
+    @Label("Source File")
+    String file;
+
+    @Override
+    public void commit(String file) {
+      this.file = file;
+      commit();
+    }
+  }
+}
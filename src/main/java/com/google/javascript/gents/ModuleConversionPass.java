@@ -33,6 +33,7 @@ public final class ModuleConversionPass implements CompilerPass {
   private static final String EXPORTS = "exports";
 
   private final AbstractCompiler compiler;
+  private final TraversalScheduler scheduler;
   private final PathUtil pathUtil;
   private final NameUtil nameUtil;
   private final NodeComments nodeComments;
@@ -65,6 +66,7 @@ public final class ModuleConversionPass implements CompilerPass {
 
   ModuleConversionPass(
       AbstractCompiler compiler,
+      TraversalScheduler scheduler,
       PathUtil pathUtil,
       NameUtil nameUtil,
       Map<String, FileModule> fileToModule,
@@ -72,6 +74,7 @@ public final class ModuleConversionPass implements CompilerPass {
       NodeComments nodeComments,
       String alreadyConvertedPrefix) {
     this.compiler = compiler;
+    this.scheduler = scheduler;
     this.pathUtil = pathUtil;
     this.nameUtil = nameUtil;
     this.nodeComments = nodeComments;
@@ -83,9 +86,11 @@ public final class ModuleConversionPass implements CompilerPass {
 
   @Override
   public void process(Node externs, Node root) {
-    NodeTraversal.traverse(compiler, root, new ModuleExportConverter());
-    NodeTraversal.traverse(compiler, root, new ModuleImportConverter());
-    NodeTraversal.traverse(compiler, root, new ModuleImportRewriter());
+    // The walks are not fused: exports refer to declarations that converting the imports replaces,
+    // and usages of imported symbols are only rewritten once all imports are known.
+    scheduler.walk("ModuleConversionPass", root, new ModuleExportConverter());
+    scheduler.walk("ModuleConversionPass", root, new ModuleImportConverter());
+    scheduler.walk("ModuleConversionPass", root, new ModuleImportRewriter());
   }
 
   /**
@@ -93,6 +98,9 @@ public final class ModuleConversionPass implements CompilerPass {
    * the declared modules.
    */
   private class ModuleExportConverter extends AbstractTopLevelCallback {
+    /** The namespaces exported by each file, which are fixed by the module metadata. */
+    private final Map<String, NamespaceTrie> exportedNamespacesByFile = new HashMap<>();
+
     @Override
     public void visit(NodeTraversal t, Node n, Node parent) {
       String fileName = n.getSourceFileName();
@@ -153,7 +161,8 @@ public final class ModuleConversionPass implements CompilerPass {
             }
             FileModule module = fileToModule.get(fileName);
             Map<String, String> symbols = module.exportedNamespacesToSymbols;
-            String exportedNamespace = nameUtil.findLongestNamePrefix(child, symbols.keySet());
+            String exportedNamespace =
+                nameUtil.findLongestNamePrefix(child, getExportedNamespaces(module));
             if (exportedNamespace != null) {
               String localName = symbols.get(exportedNamespace);
               Node export =
@@ -174,7 +183,8 @@ public final class ModuleConversionPass implements CompilerPass {
           Node lhs = child.getFirstChild();
           Map<String, String> symbols = module.exportedNamespacesToSymbols;
 
-          String exportedNamespace = nameUtil.findLongestNamePrefix(lhs, symbols.keySet());
+          String exportedNamespace =
+              nameUtil.findLongestNamePrefix(lhs, getExportedNamespaces(module));
           String exportedSymbol = null;
 
           if (exportedNamespace != null) {
@@ -210,6 +220,11 @@ public final class ModuleConversionPass implements CompilerPass {
       }
       exportsToNodes.put(ExportedSymbol.of(fileName, nodeName, nodeName), namedNode);
     }
+
+    private NamespaceTrie getExportedNamespaces(FileModule module) {
+      return exportedNamespacesByFile.computeIfAbsent(
+          module.file, f -> new NamespaceTrie(module.exportedNamespacesToSymbols.keySet()));
+    }
   }
 
   /** Converts goog.require statements into TypeScript import statements. */
@@ -301,6 +316,9 @@ public final class ModuleConversionPass implements CompilerPass {
 
   /** Rewrites variable names used in the file to correspond to the newly imported symbols. */
   private class ModuleImportRewriter extends AbstractPreOrderCallback {
+    /** The namespaces imported into each file, which are all known by the time of this walk. */
+    private final Map<String, NamespaceTrie> importedNamespacesByFile = new HashMap<>();
+
     @Override
     public boolean shouldTraverse(NodeTraversal t, Node n, Node parent) {
       // Rewrite all imported variable name usages
@@ -310,7 +328,10 @@ public final class ModuleConversionPass implements CompilerPass {
         }
 
         Map<String, String> rewriteMap = valueRewrite.rowMap().get(n.getSourceFileName());
-        String importedNamespace = nameUtil.findLongestNamePrefix(n, rewriteMap.keySet());
+        NamespaceTrie importedNamespaces =
+            importedNamespacesByFile.computeIfAbsent(
+                n.getSourceFileName(), f -> new NamespaceTrie(rewriteMap.keySet()));
+        String importedNamespace = nameUtil.findLongestNamePrefix(n, importedNamespaces);
         if (importedNamespace != null) {
           nameUtil.replacePrefixInName(n, importedNamespace, rewriteMap.get(importedNamespace));
           return false;
@@ -4,8 +4,6 @@ import com.google.javascript.jscomp.AbstractCompiler;
 import com.google.javascript.jscomp.NodeUtil;
 import com.google.javascript.rhino.JSDocInfo;
 import com.google.javascript.rhino.Node;
-import com.google.javascript.rhino.Token;
-import java.util.Set;
 import javax.annotation.Nullable;
 
 /** Utility methods for variable naming. */
@@ -26,27 +24,13 @@ class NameUtil {
     return n.isGetProp() ? n.getLastChild().getString() : n.getQualifiedName();
   }
 
-  /**
-   * Gets the longest namespace that is a prefix of the name string. Returns null if no namespaces
-   * are valid prefixes.
-   */
-  @Nullable
-  String findLongestNamePrefix(String name, Set<String> namespaces) {
-    return findLongestNamePrefix(NodeUtil.newQName(compiler, name), namespaces);
-  }
-
   /**
    * Gets the longest namespace that is a prefix of the name node. Returns null if no namespaces are
    * valid prefixes.
    */
   @Nullable
-  String findLongestNamePrefix(Node name, Set<String> namespaces) {
-    if (namespaces.contains(name.getQualifiedName())) {
-      return name.getQualifiedName();
-    } else if (name.isGetProp()) {
-      return findLongestNamePrefix(name.getFirstChild(), namespaces);
-    }
-    return null;
+  String findLongestNamePrefix(Node name, NamespaceTrie namespaces) {
+    return namespaces.findLongestPrefix(name.getQualifiedName());
   }
 
   /**
@@ -54,11 +38,12 @@ class NameUtil {
    * prefix does not exist.
    */
   String replacePrefixInName(String name, String prefix, String newPrefix) {
-    Node nameNode = NodeUtil.newQName(compiler, name);
-    // Placeholder node to ensure name has a parent
-    Node placeholder = new Node(Token.EMPTY, nameNode);
-    replacePrefixInName(nameNode, prefix, newPrefix);
-    return placeholder.getFirstChild().getQualifiedName();
+    if (name.equals(prefix)) {
+      return newPrefix;
+    } else if (name.startsWith(prefix) && name.charAt(prefix.length()) == '.') {
+      return newPrefix + name.substring(prefix.length());
+    }
+    return name;
   }
 
   /**
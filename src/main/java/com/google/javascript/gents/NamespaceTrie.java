@@ -0,0 +1,69 @@
+package com.google.javascript.gents;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A trie over the dot separated segments of namespaces, e.g. of the symbols that modules export.
+ *
+ * <p>Finds the longest namespace that prefixes a name in time linear in the number of segments of
+ * the name, independent of the number of namespaces in the trie, and without parsing the name.
+ * Segments are compared exactly, so {@code a.b} is a prefix of {@code a.b.c}, but not of {@code
+ * a.bc}. The trie is built once and only read afterwards, so it can be shared between threads.
+ */
+final class NamespaceTrie {
+  private final TrieNode root = new TrieNode();
+
+  NamespaceTrie(Iterable<String> namespaces) {
+    for (String namespace : namespaces) {
+      TrieNode node = root;
+      int start = 0;
+      while (true) {
+        int end = namespace.indexOf('.', start);
+        String segment = end == -1 ? namespace.substring(start) : namespace.substring(start, end);
+        node = node.children.computeIfAbsent(segment, s -> new TrieNode());
+        if (end == -1) {
+          break;
+        }
+        start = end + 1;
+      }
+      node.isNamespace = true;
+    }
+  }
+
+  /**
+   * Returns the longest namespace in the trie that is {@code name} or one of its prefixes, or null
+   * if there is none or {@code name} is null.
+   */
+  @Nullable
+  String findLongestPrefix(@Nullable String name) {
+    if (name == null) {
+      return null;
+    }
+    TrieNode node = root;
+    int longest = -1;
+    int start = 0;
+    while (true) {
+      int end = name.indexOf('.', start);
+      int segmentEnd = end == -1 ? name.length() : end;
+      node = node.children.get(name.substring(start, segmentEnd));
+      if (node == null) {
+        break;
+      }
+      if (node.isNamespace) {
+        longest = segmentEnd;
+      }
+      if (end == -1) {
+        break;
+      }
+      start = end + 1;
+    }
+    return longest == -1 ? null : name.substring(0, longest);
+  }
+
+  private static class TrieNode {
+    private final Map<String, TrieNode> children = new HashMap<>();
+    private boolean isNamespace = false;
+  }
+}
@@ -27,6 +27,11 @@ class NodeComments {
     return nodeToComment.get(n);
   }
 
+  /** Returns the number of nodes that have a comment. */
+  int size() {
+    return nodeToComment.size();
+  }
+
   void clearComment(Node n) {
     nodeToComment.remove(n);
   }
@@ -36,6 +36,13 @@ import org.kohsuke.args4j.spi.StringArrayOptionHandler;
  * Closure Compiler.
  */
 public class Options {
+  /** The formatters gents can run on the generated TypeScript. */
+  enum Formatter {
+    /** The clang-format binary, see {@link ClangFormatter}. */
+    CLANG_FORMAT,
+    /** The formatter built into gents, see {@link TypeScriptFormatter}. */
+    BUILTIN
+  }
 
   @Option(name = "-o", usage = "output to this directory", metaVar = "OUTPUT")
   String output = "-";
@@ -43,16 +50,25 @@ public class Options {
   @Option(name = "--root", usage = "root directory of imports", metaVar = "ROOT")
   String root = ".";
 
-  @Option(name = "--debug", usage = "run in debug mode (prints compiler warnings)")
+  @Option(name = "--debug", usage = "run in debug mode (prints compiler warnings and pass timings)")
   boolean debug = false;
 
   @Option(
     name = "--log",
-    usage = "output a log of module rewriting to this location",
+    usage = "output a log of module rewriting to this location (or '-' for stdout)",
     metaVar = "MODULE_REWRITE_LOG"
   )
   String moduleRewriteLog = null;
 
+  @Option(
+    name = "--metrics",
+    usage =
+        "output a JSON report of the time spent on each file and pass, and of the size of each "
+            + "file, to this location (or '-' for stdout), and print a summary to stderr",
+    metaVar = "METRICS"
+  )
+  String metricsReport = null;
+
   @Option(
       name = "--dependenciesManifest",
       usage =
@@ -149,6 +165,38 @@ public class Options {
   )
   String absolutePathPrefix = "google3";
 
+  @Option(
+    name = "--parallelism",
+    usage =
+        "Number of threads used to print and format the converted files. The output does not "
+            + "depend on it. Defaults to 1, which prints all files on the calling thread."
+  )
+  int parallelism = 1;
+
+  @Option(
+    name = "--formatter",
+    usage =
+        "Formats the generated TypeScript with this formatter. Options: CLANG_FORMAT, BUILTIN. "
+            + "BUILTIN runs inside gents and does not need the clang-format binary, but only "
+            + "cleans up the printed code instead of reflowing it. Default: CLANG_FORMAT"
+  )
+  Formatter formatter = Formatter.CLANG_FORMAT;
+
+  @Option(
+    name = "--cacheDir",
+    usage =
+        "directory of a local cache of formatted and converted files. Unchanged files are taken "
+            + "from the cache instead of being printed and formatted again. Default: no cache",
+    metaVar = "CACHE_DIR"
+  )
+  String cacheDir = null;
+
+  @Option(
+    name = "--cacheMaxSizeMb",
+    usage = "size limit of the cache, the least recently used entries are evicted first"
+  )
+  long cacheMaxSizeMb = 256;
+
   @Argument
   @Option(name = "--", handler = StopOptionHandler.class)
   List<String> arguments = new ArrayList<>();
@@ -238,6 +286,10 @@ public class Options {
     CmdLineParser parser = new CmdLineParser(this);
     parser.parseArgument(args);
 
+    if (parallelism < 1) {
+      throw new CmdLineException(parser, "--parallelism must be at least 1");
+    }
+
     if (!filesToConvert.isEmpty() && sourcesManifest != null) {
       throw new CmdLineException(
           parser,
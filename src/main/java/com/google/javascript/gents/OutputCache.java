@@ -0,0 +1,201 @@
+package com.google.javascript.gents;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.javascript.common.CodeFingerprint;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.SourceFile;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * A local, on-disk cache of gents outputs, used for two kinds of entries:
+ *
+ * <ul>
+ *   <li>formatted code, keyed by the printed code and the formatter, so that clang-format does not
+ *       run again for code it already formatted, and
+ *   <li>converted files, keyed by the content of the file, the module metadata of the whole program
+ *       and the options, so that unchanged files are not printed again.
+ * </ul>
+ *
+ * <p>Every entry is a file named after its key. Reading an entry refreshes its modification time,
+ * and writing one evicts the least recently used entries until the cache fits in its size limit.
+ * Entries are written atomically, so concurrent gents processes can share a cache directory. The
+ * cache is an optimization only, so failures to read or write it are ignored.
+ */
+final class OutputCache {
+  /** Bump when the format of the entries, or the way gents uses them, changes. */
+  private static final int FORMAT_VERSION = 1;
+
+  private static final String ENTRY_SUFFIX = ".ts";
+
+  private final Path directory;
+  private final long maxSizeBytes;
+
+  OutputCache(Path directory, long maxSizeBytes) {
+    this.directory = directory;
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Returns the key for formatting {@code code} with the given clang-format binary, which is
+   * identified by its path, size and modification time.
+   */
+  static String formatKey(String code, String clangFormat) {
+    Hasher hasher = newHasher("format");
+    putFile(hasher, new File(clangFormat));
+    putString(hasher, code);
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Returns the key for converting a file. {@code programKey} covers everything the conversion of
+   * every file in the program depends on, see {@link #programKey}.
+   */
+  static String conversionKey(String programKey, String fileName, String code) {
+    Hasher hasher = newHasher("conversion");
+    putString(hasher, programKey);
+    putString(hasher, fileName);
+    putString(hasher, code);
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Returns a digest of the options and module metadata that the conversion of every file depends
+   * on, along with the gents and closure binaries and the externs, or null if the binaries or the
+   * externs cannot be read, in which case the conversion should not be cached.
+   */
+  @Nullable
+  static String programKey(
+      Options opts, String clangFormat, CollectModuleMetadata metadata, List<SourceFile> externs) {
+    Hasher hasher = newHasher("program");
+    putString(hasher, opts.root);
+    putString(hasher, opts.alreadyConvertedPrefix);
+    putString(hasher, opts.absolutePathPrefix);
+    putString(hasher, opts.formatter.name());
+    if (opts.formatter == Options.Formatter.CLANG_FORMAT) {
+      putFile(hasher, new File(clangFormat));
+    }
+    putMap(hasher, opts.externsMap);
+    try {
+      CodeFingerprint.put(hasher, TypeScriptGenerator.class);
+      CodeFingerprint.put(hasher, Compiler.class);
+      hasher.putInt(externs.size());
+      for (SourceFile extern : externs) {
+        putString(hasher, extern.getName());
+        putString(hasher, extern.getCode());
+      }
+    } catch (IOException e) {
+      return null;
+    }
+    metadata.putFingerprint(hasher);
+    return hasher.hash().toString();
+  }
+
+  @Nullable
+  String get(String key) {
+    Path path = entryPath(key);
+    try {
+      String entry = new String(Files.readAllBytes(path), UTF_8);
+      Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+      return entry;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  void put(String key, String entry) {
+    try {
+      Files.createDirectories(directory);
+      Path tmp = Files.createTempFile(directory, key, ".tmp");
+      Files.write(tmp, entry.getBytes(UTF_8));
+      Files.move(tmp, entryPath(key), StandardCopyOption.ATOMIC_MOVE);
+      evictLeastRecentlyUsed();
+    } catch (IOException e) {
+      // Ignored, a later run will just miss the cache.
+    }
+  }
+
+  private void evictLeastRecentlyUsed() throws IOException {
+    List<Path> entries = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+      stream.forEach(entries::add);
+    }
+    List<EntryFile> files = new ArrayList<>();
+    for (Path entry : entries) {
+      try {
+        files.add(
+            new EntryFile(entry, Files.getLastModifiedTime(entry).toMillis(), Files.size(entry)));
+      } catch (NoSuchFileException e) {
+        // Evicted concurrently by another process.
+      }
+    }
+    files.sort(Comparator.comparingLong((EntryFile f) -> f.lastModified).reversed());
+
+    long size = 0;
+    for (EntryFile file : files) {
+      size += file.size;
+      if (size > maxSizeBytes) {
+        Files.deleteIfExists(file.path);
+      }
+    }
+  }
+
+  private Path entryPath(String key) {
+    return directory.resolve(key + ENTRY_SUFFIX);
+  }
+
+  private static class EntryFile {
+    private final Path path;
+    private final long lastModified;
+    private final long size;
+
+    private EntryFile(Path path, long lastModified, long size) {
+      this.path = path;
+      this.lastModified = lastModified;
+      this.size = size;
+    }
+  }
+
+  private static Hasher newHasher(String kind) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putInt(FORMAT_VERSION);
+    putString(hasher, kind);
+    return hasher;
+  }
+
+  private static void putFile(Hasher hasher, File file) {
+    putString(hasher, file.getPath());
+    hasher.putLong(file.length());
+    hasher.putLong(file.lastModified());
+  }
+
+  /** Strings are length prefixed, so that consecutive strings cannot run into each other. */
+  static void putString(Hasher hasher, String s) {
+    hasher.putInt(s.length());
+    hasher.putString(s, UTF_8);
+  }
+
+  static void putMap(Hasher hasher, Map<String, ?> map) {
+    Map<String, ?> sorted = new TreeMap<>(map);
+    hasher.putInt(sorted.size());
+    for (Map.Entry<String, ?> entry : sorted.entrySet()) {
+      putString(hasher, entry.getKey());
+      putString(hasher, String.valueOf(entry.getValue()));
+    }
+  }
+}
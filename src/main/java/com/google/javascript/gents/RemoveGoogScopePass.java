@@ -23,16 +23,18 @@ import javax.annotation.Nullable;
 public final class RemoveGoogScopePass extends AbstractTopLevelCallback implements CompilerPass {
 
   private final AbstractCompiler compiler;
+  private final TraversalScheduler scheduler;
   private final Set<String> providedNamespaces = new HashSet<>();
   private final Map<String, String> aliasToProvidedNamespace = new HashMap<>();
 
-  RemoveGoogScopePass(AbstractCompiler compiler) {
+  RemoveGoogScopePass(AbstractCompiler compiler, TraversalScheduler scheduler) {
     this.compiler = compiler;
+    this.scheduler = scheduler;
   }
 
   @Override
   public void process(Node externs, Node root) {
-    NodeTraversal.traverse(compiler, root, this);
+    scheduler.walk("RemoveGoogScopePass", root, this);
   }
 
   @Override
@@ -4,6 +4,8 @@ import com.google.common.collect.ImmutableMap;
 import com.google.javascript.jscomp.SourceFile;
 import com.google.javascript.rhino.Node;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nullable;
 
 /**
@@ -12,6 +14,10 @@ import javax.annotation.Nullable;
  * <p>This class is needed because a <code>com.google.javascript.rhino.Node</code> has a method for
  * accessing the node's source filename but not its <code>SourceFile</code>. This class addresses
  * this by mapping a source filename to a <code>SourceFile</code>.
+ *
+ * <p>A single extractor is shared by all files of a gents run, and may be used concurrently. The
+ * contents of each source file, including files read out of {@code .zip} inputs, are read once, on
+ * first use.
  */
 public class SourceExtractor {
 
@@ -21,6 +27,9 @@ public class SourceExtractor {
    */
   private final ImmutableMap<String, SourceFile> sourceFiles;
 
+  /** The contents of the source files that were read so far, by source file name. */
+  private final ConcurrentHashMap<String, String> contents = new ConcurrentHashMap<>();
+
   SourceExtractor(Iterable<SourceFile> sourceFiles) {
     ImmutableMap.Builder<String, SourceFile> builder = ImmutableMap.builder();
     for (SourceFile sf : sourceFiles) {
@@ -65,14 +74,30 @@ public class SourceExtractor {
       return null;
     }
 
-    SourceFile sf = this.sourceFiles.get(name);
+    String code = getContents(name);
     int offset = node.getSourceOffset();
     int length = node.getLength();
 
-    if (offset < 0) {
+    if (offset < 0 || offset + length > code.length()) {
       return null;
     }
 
-    return sf.getCode().substring(offset, offset + length);
+    return code.substring(offset, offset + length);
+  }
+
+  private String getContents(String name) throws IOException {
+    try {
+      return contents.computeIfAbsent(
+          name,
+          n -> {
+            try {
+              return sourceFiles.get(n).getCode();
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
   }
 }
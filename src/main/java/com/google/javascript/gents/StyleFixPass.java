@@ -16,16 +16,18 @@ import com.google.javascript.rhino.Token;
 public final class StyleFixPass extends AbstractPostOrderCallback implements CompilerPass {
 
   private final AbstractCompiler compiler;
+  private final TraversalScheduler scheduler;
   private final NodeComments nodeComments;
 
-  StyleFixPass(AbstractCompiler compiler, NodeComments nodeComments) {
+  StyleFixPass(AbstractCompiler compiler, TraversalScheduler scheduler, NodeComments nodeComments) {
     this.compiler = compiler;
+    this.scheduler = scheduler;
     this.nodeComments = nodeComments;
   }
 
   @Override
   public void process(Node externs, Node root) {
-    NodeTraversal.traverse(compiler, root, this);
+    scheduler.walk("StyleFixPass", root, this);
   }
 
   @Override
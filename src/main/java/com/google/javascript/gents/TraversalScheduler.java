@@ -0,0 +1,177 @@
+package com.google.javascript.gents;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableList;
+import com.google.javascript.jscomp.AbstractCompiler;
+import com.google.javascript.jscomp.NodeTraversal;
+import com.google.javascript.jscomp.NodeTraversal.Callback;
+import com.google.javascript.rhino.Node;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the AST walks of the gents passes and keeps track of how many walks every pass made and how
+ * long they took.
+ *
+ * <p>A walk can fuse several callbacks, which then visit every node one after the other, in order,
+ * instead of each walking the whole tree. This is only correct when a callback does not need the
+ * earlier callbacks to have completed on the whole tree, so passes fuse callbacks explicitly where
+ * their dependencies allow it, and run separate walks otherwise.
+ *
+ * <p>A single scheduler is shared by all files of a gents run, and may be used concurrently.
+ */
+final class TraversalScheduler {
+  private final AbstractCompiler compiler;
+
+  /** Walk count and time by pass name, in the order in which passes first walked. */
+  private final Map<String, PassTiming> timings = new LinkedHashMap<>();
+
+  TraversalScheduler(AbstractCompiler compiler) {
+    this.compiler = compiler;
+  }
+
+  /**
+   * Walks the tree under {@code root} once, visiting every node with the given callbacks.
+   *
+   * <p>When several callbacks are fused, a callback may detach the node it visits, and the
+   * callbacks after it then do not visit that node, as they would not have found it in a walk of
+   * their own. It must not replace the node it visits while a later callback still has to visit it
+   * though: in a walk of their own, the later callbacks would visit the replacement and its subtree
+   * instead, which a fused walk cannot do. The walk fails if it does.
+   */
+  void walk(String pass, Node root, Callback... callbacks) {
+    long start = System.nanoTime();
+    Callback callback = callbacks.length == 1 ? callbacks[0] : new FusedCallback(callbacks);
+    NodeTraversal.traverse(compiler, root, callback);
+    record(pass, System.nanoTime() - start);
+  }
+
+  private synchronized void record(String pass, long nanos) {
+    PassTiming timing = timings.computeIfAbsent(pass, p -> new PassTiming());
+    timing.walks++;
+    timing.nanos += nanos;
+  }
+
+  /** Returns the number of walks the pass made so far. */
+  synchronized int getWalks(String pass) {
+    PassTiming timing = timings.get(pass);
+    return timing == null ? 0 : timing.walks;
+  }
+
+  /**
+   * Prints the walks and time of every pass. With parallelism, the times of files that were
+   * converted concurrently add up.
+   */
+  synchronized void printTimings(PrintStream out) {
+    out.println("Pass timings:");
+    for (Map.Entry<String, PassTiming> entry : timings.entrySet()) {
+      PassTiming timing = entry.getValue();
+      out.println(
+          "  "
+              + entry.getKey()
+              + ": "
+              + timing.walks
+              + (timing.walks == 1 ? " walk, " : " walks, ")
+              + TimeUnit.NANOSECONDS.toMillis(timing.nanos)
+              + "ms");
+    }
+  }
+
+  private static class PassTiming {
+    private int walks = 0;
+    private long nanos = 0;
+  }
+
+  /**
+   * Runs several callbacks in a single walk. Every callback decides whether to descend into a node
+   * independently of the others: the walk only skips a subtree when none of them descends into it,
+   * and only visits nodes with the callbacks that descended into them.
+   */
+  private static class FusedCallback implements Callback {
+    private final List<Callback> callbacks;
+
+    /** For every callback, the node under which it does not descend, or null. */
+    private final Node[] skippedSubtrees;
+
+    private FusedCallback(Callback[] callbacks) {
+      this.callbacks = ImmutableList.copyOf(callbacks);
+      this.skippedSubtrees = new Node[callbacks.length];
+    }
+
+    @Override
+    public boolean shouldTraverse(NodeTraversal t, Node n, Node parent) {
+      boolean traverse = false;
+      for (int i = 0; i < skippedSubtrees.length; i++) {
+        if (skippedSubtrees[i] != null) {
+          continue;
+        }
+        if (callbacks.get(i).shouldTraverse(t, n, parent)) {
+          traverse = true;
+        } else {
+          skippedSubtrees[i] = n;
+        }
+      }
+      if (!traverse) {
+        // No visit will follow, so the callbacks that stopped at this node are done with it.
+        for (int i = 0; i < skippedSubtrees.length; i++) {
+          if (skippedSubtrees[i] == n) {
+            skippedSubtrees[i] = null;
+          }
+        }
+      }
+      return traverse;
+    }
+
+    @Override
+    public void visit(NodeTraversal t, Node n, Node parent) {
+      Node originalParent = n.getParent();
+      Node previous = originalParent == null ? null : n.getPrevious();
+      Node next = n.getNext();
+      for (int i = 0; i < skippedSubtrees.length; i++) {
+        if (skippedSubtrees[i] == n) {
+          skippedSubtrees[i] = null;
+        } else if (skippedSubtrees[i] == null && n.getParent() == originalParent) {
+          callbacks.get(i).visit(t, n, parent);
+          checkState(
+              n.getParent() == originalParent
+                  || originalParent == null
+                  || !isReplaced(originalParent, previous, next)
+                  || !hasLaterVisit(i),
+              "%s replaced a node that later fused callbacks have yet to visit",
+              callbacks.get(i).getClass().getName());
+        }
+      }
+    }
+
+    /**
+     * Returns whether the node that was removed from between {@code previous} and {@code next}
+     * under {@code parent} was replaced by another node.
+     */
+    private static boolean isReplaced(Node parent, Node previous, Node next) {
+      Node inPlace;
+      if (next == null) {
+        inPlace = parent.getLastChild();
+      } else if (next.getParent() == parent) {
+        inPlace = next.getPrevious();
+      } else {
+        // The next sibling was removed as well, so the position of the node is lost.
+        return false;
+      }
+      return inPlace != previous;
+    }
+
+    /** Returns whether a callback after the one at {@code index} visits the current node. */
+    private boolean hasLaterVisit(int index) {
+      for (int i = index + 1; i < skippedSubtrees.length; i++) {
+        if (skippedSubtrees[i] == null) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
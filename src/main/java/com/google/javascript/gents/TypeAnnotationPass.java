@@ -17,6 +17,7 @@ import com.google.common.base.Predicates;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Multimap;
@@ -36,11 +37,9 @@ import com.google.javascript.rhino.Node.TypeDeclarationNode;
 import com.google.javascript.rhino.Token;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
@@ -53,41 +52,64 @@ import javax.annotation.Nullable;
 public final class TypeAnnotationPass implements CompilerPass {
 
   private final AbstractCompiler compiler;
+  private final TraversalScheduler scheduler;
   private final PathUtil pathUtil;
   private final NameUtil nameUtil;
   private final NodeComments nodeComments;
 
   /** symbolName -> fileModule */
   private final Map<String, FileModule> symbolToModule;
+  /** All type symbols declared anywhere in the compilation unit */
+  private final NamespaceTrie symbolNamespaces;
   /** filename, namespace -> local name */
   private final Table<String, String, String> typeRewrite;
+  /**
+   * filename -> namespaces that are rewritten before this pass. The namespaces that are rewritten
+   * later are all declared in the compilation unit, so are in {@link #symbolNamespaces}.
+   */
+  private final Map<String, NamespaceTrie> rewrittenNamespaces = new HashMap<>();
   /** filename -> extra imports needed to be added */
   private final Multimap<String, Node> importsNeeded = LinkedHashMultimap.create();
   /** extern -> typing map for when extern and TS typing names differ */
   private final Map<String, String> externsMap;
+  /**
+   * filename, type expression key -> converted type. The conversion of a type expression only
+   * depends on the file it appears in, and the imports it adds to that file are added when it is
+   * first converted, so later occurrences in the same file reuse a copy of the first conversion.
+   */
+  private final Table<String, String, TypeDeclarationNode> convertedTypes = HashBasedTable.create();
 
   TypeAnnotationPass(
       AbstractCompiler compiler,
+      TraversalScheduler scheduler,
       PathUtil pathUtil,
       NameUtil nameUtil,
       Map<String, FileModule> symbolMap,
+      NamespaceTrie symbolNamespaces,
       Table<String, String, String> typeRewrite,
       NodeComments nodeComments,
       Map<String, String> externsMap) {
     this.compiler = compiler;
+    this.scheduler = scheduler;
     this.pathUtil = pathUtil;
     this.nameUtil = nameUtil;
     this.nodeComments = nodeComments;
 
-    this.symbolToModule = new HashMap<>(symbolMap);
+    this.symbolToModule = ImmutableMap.copyOf(symbolMap);
+    this.symbolNamespaces = symbolNamespaces;
     this.typeRewrite = HashBasedTable.create(typeRewrite);
+    for (Map.Entry<String, Map<String, String>> row : typeRewrite.rowMap().entrySet()) {
+      rewrittenNamespaces.put(row.getKey(), new NamespaceTrie(row.getValue().keySet()));
+    }
     this.externsMap = externsMap;
   }
 
   @Override
   public void process(Node externs, Node root) {
-    NodeTraversal.traverse(compiler, root, new TypeAnnotationConverter());
-    NodeTraversal.traverse(compiler, root, new AccessModifierConverter());
+    // Access modifiers only depend on the JSDoc of the node they are added to, which annotating
+    // types does not change. They are added first, as annotating types replaces some nodes.
+    scheduler.walk(
+        "TypeAnnotationPass", root, new AccessModifierConverter(), new TypeAnnotationConverter());
     for (Node script : root.children()) {
       addTypeOnlyImports(script);
     }
@@ -125,7 +147,7 @@ public final class TypeAnnotationPass implements CompilerPass {
               // implements part of the class definition.
               Node impls = new Node(Token.IMPLEMENTS);
               for (JSTypeExpression type : interfaces) {
-                impls.addChildToBack(convertTypeNodeAST(type.getRoot()));
+                impls.addChildToBack(convert(type, false));
               }
               impls.useSourceInfoFrom(n);
               n.putProp(Node.IMPLEMENTS, impls);
@@ -142,7 +164,7 @@ public final class TypeAnnotationPass implements CompilerPass {
         case TYPE_ALIAS:
           if (bestJSDocInfo != null && bestJSDocInfo.hasTypedefType()) {
             JSTypeExpression typeDef = bestJSDocInfo.getTypedefType();
-            n.addChildToBack(convertTypeNodeAST(typeDef.getRoot()));
+            n.addChildToBack(convert(typeDef, false));
           }
           break;
           // Names and properties are annotated with their types
@@ -268,7 +290,7 @@ public final class TypeAnnotationPass implements CompilerPass {
       if (parameterType == null) {
         return false;
       }
-      TypeDeclarationNode parameterTypeNode = convertTypeNodeAST(parameterType.getRoot());
+      TypeDeclarationNode parameterTypeNode = convert(parameterType, false);
       // Parameter is declared using verbose @param syntax before the function definition.
       Node attachTypeExpr = node;
       // Modify the primary AST to represent a function parameter as a
@@ -370,7 +392,66 @@ public final class TypeAnnotationPass implements CompilerPass {
     if (typeExpr == null) {
       return null;
     }
-    return convertTypeNodeAST(typeExpr.getRoot(), isReturnType);
+    Node root = typeExpr.getRoot();
+    String sourceFile = root.getSourceFileName();
+    // Single names are cheaper to convert again than to look up.
+    if (sourceFile == null || !root.hasChildren()) {
+      return convertTypeNodeAST(root, isReturnType);
+    }
+
+    StringBuilder key = new StringBuilder(isReturnType ? "R" : "T");
+    appendTypeKey(root, key);
+    TypeDeclarationNode converted = convertedTypes.get(sourceFile, key.toString());
+    if (converted != null) {
+      return cloneType(converted);
+    }
+    converted = convertTypeNodeAST(root, isReturnType);
+    if (converted != null) {
+      // Callers modify the returned type, so the memo keeps its own copy.
+      convertedTypes.put(sourceFile, key.toString(), cloneType(converted));
+    }
+    return converted;
+  }
+
+  /**
+   * Appends a key for the type expression rooted at {@code n} to {@code key}. Equal keys are
+   * produced exactly for type expressions that only differ in whitespace and source position.
+   */
+  private static void appendTypeKey(Node n, StringBuilder key) {
+    key.append('(').append(n.getToken().ordinal());
+    switch (n.getToken()) {
+      case STRING:
+      case STRING_KEY:
+      case NAME:
+        key.append(' ').append(n.getString().length()).append(':').append(n.getString());
+        break;
+      default:
+        break;
+    }
+    for (Node child : n.children()) {
+      appendTypeKey(child, key);
+    }
+    key.append(')');
+  }
+
+  /**
+   * Returns a copy of {@code type}. Unlike {@link Node#cloneTree}, the declared types of record
+   * fields and parameters are copied as well, instead of being shared with the original.
+   */
+  private static TypeDeclarationNode cloneType(TypeDeclarationNode type) {
+    TypeDeclarationNode clone = (TypeDeclarationNode) type.cloneTree();
+    cloneDeclaredTypes(clone);
+    return clone;
+  }
+
+  private static void cloneDeclaredTypes(Node n) {
+    TypeDeclarationNode declaredType = n.getDeclaredTypeExpression();
+    if (declaredType != null) {
+      n.setDeclaredTypeExpression(cloneType(declaredType));
+    }
+    for (Node child : n.children()) {
+      cloneDeclaredTypes(child);
+    }
   }
 
   /**
@@ -599,12 +680,16 @@ public final class TypeAnnotationPass implements CompilerPass {
             ? typeRewrite.rowMap().get(sourceFile)
             : new HashMap<>();
 
-    // All type symbols declared anywhere in the compilation unit
-    Set<String> allTypes = new HashSet<>();
-    allTypes.addAll(rewriteMap.keySet());
-    allTypes.addAll(symbolToModule.keySet());
-
-    String importedNamespace = nameUtil.findLongestNamePrefix(typeName, allTypes);
+    String importedNamespace = symbolNamespaces.findLongestPrefix(typeName);
+    NamespaceTrie rewritten = rewrittenNamespaces.get(sourceFile);
+    if (rewritten != null) {
+      String rewrittenNamespace = rewritten.findLongestPrefix(typeName);
+      if (rewrittenNamespace != null
+          && (importedNamespace == null
+              || rewrittenNamespace.length() > importedNamespace.length())) {
+        importedNamespace = rewrittenNamespace;
+      }
+    }
     // Closure compilation can be permissive to the point where there are missing types.
     // Gents supports these usecases by syntactically emitting the type as written. The file emitted
     // file might not work with TS compiler, but at least the type is not lost.
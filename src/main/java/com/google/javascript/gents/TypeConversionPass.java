@@ -3,7 +3,6 @@ package com.google.javascript.gents;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
-import com.google.javascript.gents.CollectModuleMetadata.FileModule;
 import com.google.javascript.jscomp.AbstractCompiler;
 import com.google.javascript.jscomp.CompilerPass;
 import com.google.javascript.jscomp.JSError;
@@ -20,7 +19,6 @@ import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import javax.annotation.Nullable;
 
 /**
@@ -30,43 +28,41 @@ import javax.annotation.Nullable;
 public final class TypeConversionPass implements CompilerPass {
 
   private final AbstractCompiler compiler;
+  private final TraversalScheduler scheduler;
   private final NodeComments nodeComments;
-  private final CollectModuleMetadata modulePrepass;
   private Map<String, Node> types;
-  /**
-   * typesToRename is an <oldName, newName> map typesToFilename is an <oldName, definedFromFile> map
-   * Together they are used for cross files renaming of certain types.
-   */
-  private Map<String, String> typesToRename;
-
-  private Map<String, String> typesToFilename;
 
   TypeConversionPass(
-      AbstractCompiler compiler, CollectModuleMetadata modulePrepass, NodeComments nodeComments) {
+      AbstractCompiler compiler, TraversalScheduler scheduler, NodeComments nodeComments) {
     this.compiler = compiler;
-    this.modulePrepass = modulePrepass;
+    this.scheduler = scheduler;
     this.nodeComments = nodeComments;
     this.types = new LinkedHashMap<>();
-    this.typesToRename = new LinkedHashMap<>();
-    this.typesToFilename = new LinkedHashMap<>();
   }
 
+  /**
+   * Converts the types of the files under the root. The names that class inner typedefs get as
+   * interfaces are registered in the module metadata by {@link CollectModuleMetadata}.
+   */
   @Override
   public void process(Node externs, Node root) {
-    this.typesToRename = new LinkedHashMap<>();
-    this.typesToFilename = new LinkedHashMap<>();
     for (Node child : root.children()) {
       // We convert each file independently to avoid merging class methods from different files.
       if (child.isScript()) {
         this.types = new LinkedHashMap<>();
-        NodeTraversal.traverse(compiler, child, new TypeConverter(this.nodeComments));
-        NodeTraversal.traverse(compiler, child, new TypeMemberConverter());
-        NodeTraversal.traverse(compiler, child, new FieldOnThisConverter());
-        NodeTraversal.traverse(compiler, child, new InheritanceConverter());
-        NodeTraversal.traverse(compiler, child, new EnumConverter());
+        // Members are moved into the classes once all classes are converted, and fields on "this"
+        // once all methods are. The remaining converters only change the nodes they visit and the
+        // class members, so they share a walk.
+        scheduler.walk("TypeConversionPass", child, new TypeConverter(this.nodeComments));
+        scheduler.walk("TypeConversionPass", child, new TypeMemberConverter());
+        scheduler.walk(
+            "TypeConversionPass",
+            child,
+            new FieldOnThisConverter(),
+            new InheritanceConverter(),
+            new EnumConverter());
       }
     }
-    convertTypeAlias();
   }
 
   /** Converts @constructor annotated functions into classes and all @typedefs. */
@@ -114,8 +110,6 @@ public final class TypeConversionPass implements CompilerPass {
             // Interface
             String interfaceName = n.getSecondChild().getString();
             Node interfaceMember = new Node(Token.INTERFACE_MEMBERS);
-            typesToRename.put(n.getQualifiedName(), interfaceName);
-            typesToFilename.put(n.getQualifiedName(), n.getSourceFileName());
             types.put(interfaceName, interfaceMember);
             interfaceMember.setJSDocInfo(bestJSDocInfo);
             Node interfaceNode = new Node(Token.INTERFACE, IR.empty(), IR.empty(), interfaceMember);
@@ -244,21 +238,6 @@ public final class TypeConversionPass implements CompilerPass {
       nodeComments.replaceWithComment(functionNode, newFunction);
     }
 
-    private boolean containsObject(Node typedefNode) {
-      Token typedefToken = typedefNode.getToken();
-      if (typedefToken == Token.LC) {
-        return true;
-      }
-
-      if ((typedefToken == Token.QMARK || typedefToken == Token.BANG)
-          && typedefNode.hasOneChild()) {
-        // child Node is a simple type or a LC
-        return containsObject(typedefNode.getFirstChild());
-      }
-
-      return false;
-    }
-
     private void createTypeAlias(Node n, Node parent) {
       JSDocInfo bestJSDocInfo = NodeUtil.getBestJSDocInfo(n);
       if (bestJSDocInfo != null && bestJSDocInfo.hasTypedefType()) {
@@ -507,40 +486,19 @@ public final class TypeConversionPass implements CompilerPass {
     }
   }
 
-  /**
-   * Put every type alias into their fileModule's importedNamespacesToSymbols Map so
-   * TypeAnnotationPass can actually fix all references across multiple files importing the type and
-   * create import statements if needed.
-   *
-   * <p>TODO(bowenni): If the type to rename is exported as an alias then the references in other
-   * files will not get renamed.
-   *
-   * <pre>
-   * goog.module('A');
-   * exports.alias = typeToRename;
-   *
-   * goog.require('A');
-   * {@literal @}typedef {A.alias};
-   * </pre>
-   *
-   * In this case the child module won't rename 'A.alias' because the child module is expecting to
-   * rename 'typeToRename'
-   */
-  private void convertTypeAlias() {
-    Map<String, FileModule> fileMap = modulePrepass.getFileMap();
-    for (Entry<String, String> entry : typesToRename.entrySet()) {
-      // Need to add a module entry in the file to module map otherwise TypeAnnotationPass won't
-      // convert any symbols in the file.
-      String oldTypeName = entry.getKey();
-      String newTypeName = entry.getValue();
-      String filename = typesToFilename.get(oldTypeName);
-      FileModule module = fileMap.get(filename);
-      if (module != null) {
-        // TypeAnnotationPass will convert the global type name to the local type name using this
-        // mapping.
-        module.importedNamespacesToSymbols.put(oldTypeName, newTypeName);
-      }
+  /** Returns whether a typedef is of an object type, which is converted into an interface. */
+  static boolean containsObject(Node typedefNode) {
+    Token typedefToken = typedefNode.getToken();
+    if (typedefToken == Token.LC) {
+      return true;
     }
+
+    if ((typedefToken == Token.QMARK || typedefToken == Token.BANG) && typedefNode.hasOneChild()) {
+      // child Node is a simple type or a LC
+      return containsObject(typedefNode.getFirstChild());
+    }
+
+    return false;
   }
 
   /** Converts @constructor annotated functions into class definitions. */
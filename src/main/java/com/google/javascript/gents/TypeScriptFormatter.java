@@ -0,0 +1,375 @@
+package com.google.javascript.gents;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A formatter that runs inside the JVM and cleans up the pretty printed output of {@link
+ * GentsCodeGenerator} towards the Google TypeScript style that clang-format produces.
+ *
+ * <p>The code printer already indents blocks by two spaces and puts statements on their own lines,
+ * so unlike clang-format this formatter does not reflow code. It only fixes what the printer gets
+ * wrong line by line: the line breaks {@link GentsCodeGenerator} inserts in the middle of a
+ * statement, trailing whitespace, blank lines that open or close a block or repeat, empty blocks,
+ * the indentation of comments, the spacing of import and export clauses and the spacing inside
+ * object literals and types. Lines longer than the column limit are not wrapped, and union types
+ * keep the spaces around their "|".
+ *
+ * <p>Lines that start inside a string or template literal are part of its contents and are kept
+ * exactly as they are, as is the whitespace at the end of a line that opens one. Within a line, the
+ * contents of strings, regular expressions and comments are never changed.
+ */
+final class TypeScriptFormatter {
+  private static final int INDENT = 2;
+
+  /** The keywords after which a "/" starts a regular expression literal. */
+  private static final ImmutableSet<String> REGEX_KEYWORDS =
+      ImmutableSet.of(
+          "return",
+          "typeof",
+          "instanceof",
+          "in",
+          "of",
+          "new",
+          "delete",
+          "void",
+          "throw",
+          "case",
+          "do",
+          "else",
+          "yield",
+          "await");
+
+  private TypeScriptFormatter() {}
+
+  static String format(String code) {
+    List<String> lines = new ArrayList<>();
+    // The lines that are the contents of a literal, by their index in lines.
+    BitSet literalLines = new BitSet();
+    LiteralTracker literals = new LiteralTracker();
+    String pending = null;
+    boolean inBlockComment = false;
+    int commentIndent = 0;
+    for (String rawLine : code.split("\n", -1)) {
+      boolean startsInLiteral = literals.isInLiteral();
+      literals.scan(rawLine);
+      if (startsInLiteral) {
+        literalLines.set(lines.size());
+        lines.add(rawLine);
+        continue;
+      }
+      boolean endsInLiteral = literals.isInLiteral();
+      String line = endsInLiteral ? rawLine : stripTrailingWhitespace(rawLine);
+      String trimmed = line.substring(indentation(line));
+      if (inBlockComment) {
+        // Continuation lines of block comments are aligned one column right of the opening "/*".
+        if (trimmed.startsWith("*")) {
+          line = Strings.repeat(" ", commentIndent + 1) + trimmed;
+        }
+        inBlockComment = !trimmed.contains("*/");
+        lines.add(line);
+        continue;
+      }
+      if (pending != null) {
+        line = join(pending, trimmed);
+        pending = null;
+      }
+      if (!endsInLiteral && isBreakInStatement(rawLine)) {
+        pending = line;
+        continue;
+      }
+      String previous = lines.isEmpty() ? "" : lines.get(lines.size() - 1);
+      if (trimmed.startsWith("//") && previous.endsWith("{")) {
+        // The printer does not indent comments that are the only content of a block.
+        line = Strings.repeat(" ", indentation(previous) + INDENT) + trimmed;
+      }
+      if (trimmed.startsWith("/*") && !trimmed.contains("*/")) {
+        inBlockComment = true;
+        commentIndent = indentation(line);
+      }
+      lines.add(formatLine(line));
+    }
+    if (pending != null) {
+      lines.add(formatLine(pending));
+    }
+
+    StringBuilder out = new StringBuilder(code.length());
+    String previous = null;
+    boolean blank = false;
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i);
+      if (literalLines.get(i)) {
+        out.append(line).append('\n');
+        previous = line;
+        continue;
+      }
+      if (line.isEmpty()) {
+        blank = previous != null;
+        continue;
+      }
+      String trimmed = line.trim();
+      if (!blank && previous != null && previous.endsWith("{") && trimmed.startsWith("}")) {
+        // Empty blocks are closed on the same line.
+        out.setLength(out.length() - 1);
+        out.append(trimmed).append('\n');
+        previous = previous + trimmed;
+        continue;
+      }
+      if (blank && !previous.endsWith("{") && !trimmed.startsWith("}")) {
+        out.append('\n');
+      }
+      blank = false;
+      out.append(line).append('\n');
+      previous = line;
+    }
+    return out.toString();
+  }
+
+  /**
+   * Returns whether the line, as printed, ends in one of the line breaks that {@link
+   * GentsCodeGenerator} adds before declarations, which are printed as " \n", in the middle of a
+   * statement. Only the printed line tells, as a line that was joined with the previous one no
+   * longer shows its own trailing whitespace.
+   */
+  private static boolean isBreakInStatement(String rawLine) {
+    String line = stripTrailingWhitespace(rawLine);
+    if (rawLine.equals(line) || line.trim().isEmpty()) {
+      return false;
+    }
+    String trimmed = line.trim();
+    if (trimmed.startsWith("//") || trimmed.startsWith("/*") || trimmed.startsWith("*")) {
+      return false;
+    }
+    return !(line.endsWith("{") || line.endsWith("}") || line.endsWith(";"));
+  }
+
+  private static String join(String line, String next) {
+    if (line.endsWith("(") || line.endsWith("[")) {
+      return line + next;
+    }
+    return line + " " + next;
+  }
+
+  private static String formatLine(String line) {
+    String trimmed = line.trim();
+    if (trimmed.startsWith("import") || trimmed.startsWith("export")) {
+      line = formatImportExport(line);
+    }
+    return formatObjectColons(line);
+  }
+
+  /**
+   * Adds the spaces that the printer leaves out around the braces and "*" of import and export
+   * clauses, as in {@code import {A} from './a'} and {@code import * as a from './a'}.
+   */
+  private static String formatImportExport(String line) {
+    return line.replaceFirst("^(\\s*(?:import|export))(?=[{*])", "$1 ")
+        .replaceFirst("^(\\s*(?:import|export) )\\*(?=as |from)", "$1* ")
+        .replaceFirst("^(\\s*(?:import|export) [^'\"`]*)\\}from(?=\\s*['\"])", "$1} from");
+  }
+
+  /**
+   * Adds the space that clang-format puts after the colon of a property in an object literal or
+   * type, as in {@code {a: number}}, leaving string and regular expression literals and comments
+   * alone.
+   */
+  private static String formatObjectColons(String line) {
+    if (line.indexOf('{') == -1 || line.indexOf(':') == -1) {
+      return line;
+    }
+    StringBuilder out = new StringBuilder(line.length() + 8);
+    int braceDepth = 0;
+    char quote = 0;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      out.append(c);
+      if (quote != 0) {
+        if (c == '\\' && i + 1 < line.length()) {
+          out.append(line.charAt(++i));
+        } else if (c == quote) {
+          quote = 0;
+        }
+        continue;
+      }
+      if (c == '/') {
+        int end = skipCommentOrRegex(line, i);
+        out.append(line, i + 1, end);
+        i = end - 1;
+        continue;
+      }
+      switch (c) {
+        case '\'':
+        case '"':
+        case '`':
+          quote = c;
+          break;
+        case '{':
+          braceDepth++;
+          break;
+        case '}':
+          braceDepth--;
+          break;
+        case ':':
+          if (braceDepth > 0 && i + 1 < line.length() && line.charAt(i + 1) != ' ') {
+            out.append(' ');
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    return out.toString();
+  }
+
+  /**
+   * Returns the index after the comment or regular expression literal that starts with the "/" at
+   * {@code start}, or {@code start + 1} if it is a division. Comments that are not closed on the
+   * line extend to its end.
+   */
+  private static int skipCommentOrRegex(String line, int start) {
+    char next = start + 1 < line.length() ? line.charAt(start + 1) : 0;
+    if (next == '/') {
+      return line.length();
+    }
+    if (next == '*') {
+      int end = line.indexOf("*/", start + 2);
+      return end == -1 ? line.length() : end + 2;
+    }
+    if (!canStartRegex(line, start)) {
+      return start + 1;
+    }
+    boolean inClass = false;
+    for (int i = start + 1; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '[') {
+        inClass = true;
+      } else if (c == ']') {
+        inClass = false;
+      } else if (c == '/' && !inClass) {
+        return i + 1;
+      }
+    }
+    // Regular expressions end on their line, so this is a division after all.
+    return start + 1;
+  }
+
+  /**
+   * Returns whether a "/" at {@code index} can start a regular expression literal rather than be a
+   * division, which follows an operand: a name, a number, or a closing parenthesis or bracket.
+   */
+  private static boolean canStartRegex(String line, int index) {
+    int end = index;
+    while (end > 0 && line.charAt(end - 1) == ' ') {
+      end--;
+    }
+    if (end == 0) {
+      return true;
+    }
+    char previous = line.charAt(end - 1);
+    if (previous == ')' || previous == ']') {
+      return false;
+    }
+    if (!Character.isJavaIdentifierPart(previous)) {
+      return true;
+    }
+    int start = end;
+    while (start > 0 && Character.isJavaIdentifierPart(line.charAt(start - 1))) {
+      start--;
+    }
+    return REGEX_KEYWORDS.contains(line.substring(start, end));
+  }
+
+  private static String stripTrailingWhitespace(String line) {
+    int end = line.length();
+    while (end > 0 && Character.isWhitespace(line.charAt(end - 1))) {
+      end--;
+    }
+    return line.substring(0, end);
+  }
+
+  /**
+   * Tracks whether the code is inside a string or template literal at the end of every line it
+   * scans, skipping comments, regular expression literals and the substitutions of template
+   * literals.
+   */
+  private static final class LiteralTracker {
+    /**
+     * For every open template literal, innermost first, the depth of the braces in its current
+     * substitution, or -1 in its text.
+     */
+    private final Deque<Integer> templates = new ArrayDeque<>();
+
+    /** The quote of a string literal that is continued on the next line, or 0. */
+    private char quote = 0;
+
+    private boolean inBlockComment = false;
+
+    boolean isInLiteral() {
+      return quote != 0 || (!templates.isEmpty() && templates.peek() < 0);
+    }
+
+    void scan(String line) {
+      boolean escapedLineBreak = false;
+      for (int i = 0; i < line.length(); i++) {
+        char c = line.charAt(i);
+        char next = i + 1 < line.length() ? line.charAt(i + 1) : 0;
+        if (inBlockComment) {
+          if (c == '*' && next == '/') {
+            inBlockComment = false;
+            i++;
+          }
+        } else if (quote != 0) {
+          if (c == '\\') {
+            escapedLineBreak = i + 1 == line.length();
+            i++;
+          } else if (c == quote) {
+            quote = 0;
+          }
+        } else if (!templates.isEmpty() && templates.peek() < 0) {
+          if (c == '\\') {
+            i++;
+          } else if (c == '`') {
+            templates.pop();
+          } else if (c == '$' && next == '{') {
+            templates.pop();
+            templates.push(0);
+            i++;
+          }
+        } else if (c == '/' && next == '*' && line.indexOf("*/", i + 2) == -1) {
+          inBlockComment = true;
+          i++;
+        } else if (c == '/') {
+          i = skipCommentOrRegex(line, i) - 1;
+        } else if (c == '\'' || c == '"') {
+          quote = c;
+        } else if (c == '`') {
+          templates.push(-1);
+        } else if (c == '{' && !templates.isEmpty()) {
+          templates.push(templates.pop() + 1);
+        } else if (c == '}' && !templates.isEmpty()) {
+          // Closing the substitution itself returns to the text of the template literal.
+          templates.push(templates.pop() - 1);
+        }
+      }
+      if (quote != 0 && !escapedLineBreak) {
+        // Only a backslash continues a string literal on the next line, this one is unterminated.
+        quote = 0;
+      }
+    }
+  }
+
+  private static int indentation(String line) {
+    int indent = 0;
+    while (indent < line.length() && line.charAt(indent) == ' ') {
+      indent++;
+    }
+    return indent;
+  }
+}
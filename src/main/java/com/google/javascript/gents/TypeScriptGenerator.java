@@ -3,9 +3,14 @@ package com.google.javascript.gents;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.stream.Collectors.toList;
 
+import com.google.common.base.Utf8;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
-import com.google.common.io.ByteSource;
 import com.google.common.io.Files;
+import com.google.javascript.common.ParallelTasks;
+import com.google.javascript.common.PersistentWorker;
+import com.google.javascript.gents.CollectModuleMetadata.FileModule;
 import com.google.javascript.jscomp.CodeConsumer;
 import com.google.javascript.jscomp.CodeGenerator;
 import com.google.javascript.jscomp.CodePrinter;
@@ -17,23 +22,26 @@ import com.google.javascript.jscomp.DiagnosticType;
 import com.google.javascript.jscomp.ErrorFormat;
 import com.google.javascript.jscomp.JSError;
 import com.google.javascript.jscomp.SourceFile;
+import com.google.javascript.rhino.IR;
+import com.google.javascript.rhino.InputId;
 import com.google.javascript.rhino.Node;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
 import org.kohsuke.args4j.CmdLineException;
 
 /**
@@ -46,48 +54,54 @@ public class TypeScriptGenerator {
   private static final DiagnosticType GENTS_INTERNAL_ERROR =
       DiagnosticType.error("CLUTZ_INTERNAL_ERROR", "Gents failed: {0}");
 
-  /**
-   * Command line clang-format string to format stdin. The filename 'a.ts' is only used to inform
-   * clang-format of the file type (TS).
-   */
-  private static final String[] CLANG_FORMAT = {
-    "./node_modules/.bin/clang-format", "-assume-filename=a.ts", "-style=Google"
-  };
-
-  static {
-    // In some environments (Mac OS X programs started from Finder, like your IDE) PATH does
-    // not contain "clang-format". This property allows explicitly configuring its location.
-    String cfLocation = System.getProperty("gents.clangFormat");
-    if (cfLocation != null) {
-      CLANG_FORMAT[0] = cfLocation;
+  /** The clang-format binary used to format the generated TypeScript. */
+  private static final String CLANG_FORMAT =
+      // In some environments (Mac OS X programs started from Finder, like your IDE) PATH does
+      // not contain "clang-format". This property allows explicitly configuring its location.
+      System.getProperty("gents.clangFormat", "./node_modules/.bin/clang-format");
+
+  /** How long a single clang-format process may run before it is killed. */
+  private static final long CLANG_FORMAT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+  public static void main(String[] args) {
+    if (PersistentWorker.isPersistentWorkerRequested(args)) {
+      System.exit(new PersistentWorker(System.in, System.out, TypeScriptGenerator::run).run());
     }
+    System.exit(run(args, System.out, System.err));
   }
 
-  public static void main(String[] args) {
+  /**
+   * Runs a single gents invocation for the given command line, printing the output (if written to
+   * stdout) and diagnostics to the given streams.
+   *
+   * @return the process exit code for the invocation.
+   */
+  static int run(String[] args, PrintStream stdout, PrintStream stderr) {
     Options options = null;
     try {
       options = new Options(args);
     } catch (CmdLineException e) {
-      System.err.println(e.getMessage());
-      System.err.println("Usage: gents [options...] arguments...");
-      e.getParser().printUsage(System.err);
-      System.err.println();
-      System.exit(1);
+      stderr.println(e.getMessage());
+      stderr.println("Usage: gents [options...] arguments...");
+      e.getParser().printUsage(stderr);
+      stderr.println();
+      return 1;
     }
     TypeScriptGenerator generator = null;
     try {
       generator = new TypeScriptGenerator(options);
-      generator.generateTypeScript();
+      generator.setErrorStream(stderr);
+      generator.generateTypeScript(stdout);
       if (generator.hasErrors()) {
         // Already reported through the print stream.
-        System.exit(2);
+        return 2;
       }
     } catch (Exception e) {
-      e.printStackTrace(System.err);
-      System.err.println("Uncaught exception in gents, exiting.");
-      System.exit(3);
+      e.printStackTrace(stderr);
+      stderr.println("Uncaught exception in gents, exiting.");
+      return 3;
     }
-    System.exit(0);
+    return 0;
   }
 
   private final Options opts;
@@ -95,19 +109,28 @@ public class TypeScriptGenerator {
 
   final PathUtil pathUtil;
   private final NameUtil nameUtil;
+  private final TraversalScheduler scheduler;
   private GentsErrorManager errorManager;
+  private PrintStream errStream;
+  @Nullable private final OutputCache cache;
 
   TypeScriptGenerator(Options opts) {
     this.opts = opts;
-    this.compiler = new Compiler();
+    this.compiler = new SynchronizedCompiler();
     compiler.disableThreads();
     setErrorStream(System.err);
 
     this.pathUtil = new PathUtil(opts.root, opts.absolutePathPrefix);
     this.nameUtil = new NameUtil(compiler);
+    this.scheduler = new TraversalScheduler(compiler);
+    this.cache =
+        opts.cacheDir == null
+            ? null
+            : new OutputCache(Paths.get(opts.cacheDir), opts.cacheMaxSizeMb * 1024 * 1024);
   }
 
   void setErrorStream(PrintStream errStream) {
+    this.errStream = errStream;
     errorManager =
         new GentsErrorManager(
             errStream, ErrorFormat.MULTILINE.toFormatter(compiler, true), opts.debug);
@@ -118,7 +141,7 @@ public class TypeScriptGenerator {
     return compiler.getErrorManager().getErrorCount() > 0;
   }
 
-  private void generateTypeScript() throws IOException {
+  private void generateTypeScript(PrintStream stdout) throws IOException {
     List<SourceFile> srcFiles = getFiles(opts.srcFiles);
     List<SourceFile> externFiles = getFiles(opts.externs);
     Set<String> filesToConvert = Sets.newLinkedHashSet(opts.filesToConvert);
@@ -131,10 +154,10 @@ public class TypeScriptGenerator {
       String filepath = pathUtil.getFilePathWithoutExtension(relativePath);
       String tsCode = resultFileMap.get(filepath);
       if ("-".equals(opts.output)) {
-        System.out.println("========================================");
-        System.out.println("File: " + relativePath);
-        System.out.println("========================================");
-        System.out.println(tsCode);
+        stdout.println("========================================");
+        stdout.println("File: " + relativePath);
+        stdout.println("========================================");
+        stdout.println(tsCode);
       } else {
         String tsFilename = pathUtil.removeExtension(relativePath) + ".ts";
         File output = new File(new File(opts.output), tsFilename);
@@ -149,12 +172,26 @@ public class TypeScriptGenerator {
       }
     }
     try {
-      if (opts.moduleRewriteLog != null) {
+      if ("-".equals(opts.moduleRewriteLog)) {
+        stdout.println(result.moduleRewriteLog);
+      } else if (opts.moduleRewriteLog != null) {
         Files.asCharSink(new File(opts.moduleRewriteLog), UTF_8).write(result.moduleRewriteLog);
       }
     } catch (IOException e) {
       throw new IllegalArgumentException("Unable to write to file " + opts.moduleRewriteLog, e);
     }
+    if (opts.metricsReport != null) {
+      try {
+        if ("-".equals(opts.metricsReport)) {
+          stdout.println(result.metrics.toJson());
+        } else {
+          Files.asCharSink(new File(opts.metricsReport), UTF_8).write(result.metrics.toJson());
+        }
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Unable to write to file " + opts.metricsReport, e);
+      }
+      result.metrics.printSummary(errStream);
+    }
   }
 
   /** Returns a map from the basename to the TypeScript code generated for the file. */
@@ -162,103 +199,406 @@ public class TypeScriptGenerator {
       Set<String> filesToConvert, List<SourceFile> srcFiles, List<SourceFile> externs)
       throws AssertionError {
     GentsResult result = new GentsResult();
+    ConversionMetrics metrics = result.metrics;
 
     final CompilerOptions compilerOpts = opts.getCompilerOptions();
     // Compile javascript code
-    compiler.compile(externs, srcFiles, compilerOpts);
+    metrics.time("compile", () -> compiler.compile(externs, srcFiles, compilerOpts));
 
     Node externRoot = compiler.getRoot().getFirstChild();
     Node srcRoot = compiler.getRoot().getLastChild();
 
-    new RemoveGoogScopePass(compiler).process(externRoot, srcRoot);
+    metrics.time(
+        "RemoveGoogScopePass",
+        () -> new RemoveGoogScopePass(compiler, scheduler).process(externRoot, srcRoot));
 
     CollectModuleMetadata modulePrePass =
-        new CollectModuleMetadata(compiler, nameUtil, filesToConvert);
-    modulePrePass.process(externRoot, srcRoot);
+        new CollectModuleMetadata(compiler, scheduler, nameUtil, filesToConvert);
+    metrics.time("CollectModuleMetadata", () -> modulePrePass.process(externRoot, srcRoot));
 
     // Strips all file nodes that we are not compiling.
     stripNonCompiledNodes(srcRoot, filesToConvert);
-
-    CommentLinkingPass commentsPass = new CommentLinkingPass(compiler);
-    commentsPass.process(externRoot, srcRoot);
-    final NodeComments comments = commentsPass.getComments();
-
-    ModuleConversionPass modulePass =
-        new ModuleConversionPass(
-            compiler,
-            pathUtil,
-            nameUtil,
-            modulePrePass.getFileMap(),
-            modulePrePass.getNamespaceMap(),
-            comments,
-            opts.alreadyConvertedPrefix);
-    modulePass.process(externRoot, srcRoot);
-
-    new TypeConversionPass(compiler, modulePrePass, comments).process(externRoot, srcRoot);
-
-    new TypeAnnotationPass(
-            compiler,
-            pathUtil,
-            nameUtil,
-            modulePrePass.getSymbolMap(),
-            modulePass.getTypeRewrite(),
-            comments,
-            opts.externsMap)
-        .process(externRoot, srcRoot);
-
-    new StyleFixPass(compiler, comments).process(externRoot, srcRoot);
-
-    // We only use the source root as the extern root is ignored for codegen
     for (Node file : srcRoot.children()) {
-      try {
-        String filepath = pathUtil.getFilePathWithoutExtension(file.getSourceFileName());
-        CodeGeneratorFactory factory =
-            new CodeGeneratorFactory() {
-              @Override
-              public CodeGenerator getCodeGenerator(Format outputFormat, CodeConsumer cc) {
-                return new GentsCodeGenerator(
-                    cc, compilerOpts, comments, opts.externsMap, new SourceExtractor(srcFiles));
-              }
-            };
-
-        String tsCode =
-            new CodePrinter.Builder(file)
-                .setCompilerOptions(opts.getCompilerOptions())
-                .setTypeRegistry(compiler.getTypeRegistry())
-                .setCodeGeneratorFactory(factory)
-                .setPrettyPrint(true)
-                .setLineBreak(true)
-                .setOutputTypes(true)
-                .build();
-
-        // For whatever reason closure sometimes prefixes the emit with an empty new line. Strip
-        // newlines not present in the original source.
-        CharSequence originalSourceCode =
-            compiler.getSourceFileContentByName(file.getSourceFileName());
-
-        Integer originalCount = countBeginningNewlines(originalSourceCode);
-        Integer newCount = countBeginningNewlines(tsCode);
-
-        if (newCount > originalCount) {
-          tsCode = tsCode.substring(newCount - originalCount);
-        }
+      String fileName = file.getSourceFileName();
+      metrics.addFile(fileName, compiler.getSourceFileContentByName(fileName));
+    }
 
-        result.sourceFileMap.put(filepath, tryClangFormat(tsCode));
-      } catch (Throwable t) {
-        System.err.println("Failed while converting " + file.getSourceFileName());
-        t.printStackTrace(System.err);
-        compiler.report(
-            JSError.make(file.getSourceFileName(), -1, -1, GENTS_INTERNAL_ERROR, t.getMessage()));
+    // Files whose conversion is cached are not printed again. If every file is cached, the
+    // conversion passes are skipped as well.
+    Map<String, String> conversionKeys = getConversionKeys(srcRoot, modulePrePass, externs);
+    Map<String, String> cachedConversions = new HashMap<>();
+    for (Map.Entry<String, String> entry : conversionKeys.entrySet()) {
+      String cached = cache.get(entry.getValue());
+      if (cached != null) {
+        cachedConversions.put(entry.getKey(), cached);
+      }
+    }
+    if (!conversionKeys.isEmpty() && cachedConversions.size() == conversionKeys.size()) {
+      for (Node file : srcRoot.children()) {
+        String tsCode = cachedConversions.get(file.getSourceFileName());
+        result.sourceFileMap.put(
+            pathUtil.getFilePathWithoutExtension(file.getSourceFileName()), tsCode);
+        ConversionMetrics.FileMetrics fileMetrics = metrics.getFile(file.getSourceFileName());
+        fileMetrics.cached = true;
+        fileMetrics.outputBytes = Utf8.encodedLength(tsCode);
+      }
+    } else {
+      List<PrintedFile> printedFiles =
+          convertFiles(
+              externRoot,
+              srcRoot,
+              srcFiles,
+              modulePrePass,
+              compilerOpts,
+              cachedConversions,
+              result);
+      if (!conversionKeys.isEmpty() && !hasErrors()) {
+        for (PrintedFile printedFile : printedFiles) {
+          if (printedFile.failure == null && !printedFile.cached && !printedFile.unformatted) {
+            cache.put(conversionKeys.get(printedFile.sourceFileName), printedFile.tsCode);
+          }
+        }
       }
     }
 
     result.moduleRewriteLog =
         new ModuleRenameLogger()
             .generateModuleRewriteLog(filesToConvert, modulePrePass.getNamespaceMap());
+    if (opts.debug) {
+      scheduler.printTimings(errStream);
+    }
     errorManager.doGenerateReport();
     return result;
   }
 
+  /**
+   * Runs the conversion passes and prints the converted files into the result, taking the ones in
+   * {@code cachedConversions} from the cache instead of printing them.
+   */
+  private List<PrintedFile> convertFiles(
+      Node externRoot,
+      Node srcRoot,
+      List<SourceFile> srcFiles,
+      CollectModuleMetadata modulePrePass,
+      CompilerOptions compilerOpts,
+      Map<String, String> cachedConversions,
+      GentsResult result) {
+    // Every file is moved under a root of its own and runs through the passes and the code
+    // generation as a unit, independently of the other files and possibly in parallel with them.
+    // The passes of a file only depend on the module metadata of the whole program, so every file
+    // is converted and printed end to end, and its AST and comments are released once it is
+    // printed. The results and failures of the files are still collected in input order.
+    List<FileConversion> conversions = new ArrayList<>();
+    for (Node file : ImmutableList.copyOf(srcRoot.children())) {
+      conversions.add(
+          new FileConversion(
+              externRoot,
+              IR.root(file.detach()),
+              result.metrics.getFile(file.getSourceFileName())));
+    }
+    Map<String, FileModule> symbolMap = ImmutableMap.copyOf(modulePrePass.getSymbolMap());
+    NamespaceTrie symbolNamespaces = new NamespaceTrie(symbolMap.keySet());
+
+    // All files share one extractor, which reads every source file at most once.
+    SourceExtractor extractor = new SourceExtractor(srcFiles);
+    List<PrintedFile> printedFiles =
+        runAll(
+            conversions,
+            conversion ->
+                conversion.convertAndPrint(
+                    modulePrePass,
+                    symbolMap,
+                    symbolNamespaces,
+                    extractor,
+                    compilerOpts,
+                    cachedConversions));
+
+    if (opts.formatter == Options.Formatter.CLANG_FORMAT) {
+      formatWithClangFormat(printedFiles, result.metrics);
+    }
+    for (PrintedFile printedFile : printedFiles) {
+      if (printedFile.failure == null) {
+        result.sourceFileMap.put(printedFile.filepath, printedFile.tsCode);
+        result.metrics.getFile(printedFile.sourceFileName).outputBytes =
+            Utf8.encodedLength(printedFile.tsCode);
+      } else {
+        errStream.println("Failed while converting " + printedFile.sourceFileName);
+        printedFile.failure.printStackTrace(errStream);
+        compiler.report(
+            JSError.make(
+                printedFile.sourceFileName,
+                -1,
+                -1,
+                GENTS_INTERNAL_ERROR,
+                printedFile.failure.getMessage()));
+      }
+    }
+    return printedFiles;
+  }
+
+  /**
+   * Runs a step of the conversion for every file, in parallel if requested, and returns the results
+   * in file order.
+   */
+  private <T> List<T> runAll(List<FileConversion> conversions, Function<FileConversion, T> step) {
+    List<T> results = new ArrayList<>();
+    if (opts.parallelism <= 1 || conversions.size() <= 1) {
+      for (FileConversion conversion : conversions) {
+        results.add(step.apply(conversion));
+      }
+      return results;
+    }
+    List<Callable<T>> tasks = new ArrayList<>();
+    for (FileConversion conversion : conversions) {
+      tasks.add(() -> step.apply(conversion));
+    }
+    return ParallelTasks.invokeAll(opts.parallelism, tasks);
+  }
+
+  /**
+   * The conversion of a single file, whose AST and comments are only referenced from here and are
+   * released once the file is printed.
+   */
+  private class FileConversion {
+    private final Node externRoot;
+    private final String sourceFileName;
+    private final ConversionMetrics.FileMetrics metrics;
+    private Node root;
+
+    private FileConversion(Node externRoot, Node root, ConversionMetrics.FileMetrics metrics) {
+      this.externRoot = externRoot;
+      this.root = root;
+      this.sourceFileName = root.getFirstChild().getSourceFileName();
+      this.metrics = metrics;
+    }
+
+    /**
+     * Runs the passes over the file and prints it. Files taken from the conversion cache skip the
+     * annotation and style passes.
+     */
+    private PrintedFile convertAndPrint(
+        CollectModuleMetadata modulePrePass,
+        Map<String, FileModule> symbolMap,
+        NamespaceTrie symbolNamespaces,
+        SourceExtractor extractor,
+        CompilerOptions compilerOpts,
+        Map<String, String> cachedConversions) {
+      metrics.astNodes = ConversionMetrics.countNodes(root.getFirstChild());
+      CommentLinkingPass commentsPass = new CommentLinkingPass(compiler, scheduler);
+      metrics.time("CommentLinkingPass", () -> commentsPass.process(externRoot, root));
+      NodeComments comments = commentsPass.getComments();
+      metrics.linkedComments = comments.size();
+
+      ModuleConversionPass modulePass =
+          new ModuleConversionPass(
+              compiler,
+              scheduler,
+              pathUtil,
+              nameUtil,
+              modulePrePass.getFileMap(),
+              modulePrePass.getNamespaceMap(),
+              comments,
+              opts.alreadyConvertedPrefix);
+      metrics.time("ModuleConversionPass", () -> modulePass.process(externRoot, root));
+
+      TypeConversionPass typePass = new TypeConversionPass(compiler, scheduler, comments);
+      metrics.time("TypeConversionPass", () -> typePass.process(externRoot, root));
+
+      if (!cachedConversions.containsKey(sourceFileName)) {
+        TypeAnnotationPass annotationPass =
+            new TypeAnnotationPass(
+                compiler,
+                scheduler,
+                pathUtil,
+                nameUtil,
+                symbolMap,
+                symbolNamespaces,
+                modulePass.getTypeRewrite(),
+                comments,
+                opts.externsMap);
+        metrics.time("TypeAnnotationPass", () -> annotationPass.process(externRoot, root));
+
+        StyleFixPass styleFixPass = new StyleFixPass(compiler, scheduler, comments);
+        metrics.time("StyleFixPass", () -> styleFixPass.process(externRoot, root));
+      }
+
+      GentsEvents.Codegen event = GentsEvents.beginCodegen();
+      long start = System.nanoTime();
+      PrintedFile printedFile =
+          printFile(root.getFirstChild(), extractor, compilerOpts, comments, cachedConversions);
+      metrics.codegenNanos = System.nanoTime() - start;
+      metrics.cached = printedFile.cached;
+      if (event.shouldCommit()) {
+        event.commit(sourceFileName);
+      }
+
+      // The compiler input holds on to the AST as well.
+      compiler.getInput(new InputId(sourceFileName)).clearAst();
+      root = null;
+      return printedFile;
+    }
+  }
+
+  /**
+   * Returns the {@link OutputCache} keys of the converted files by source file name, or an empty
+   * map if there is no cache or compilation failed.
+   */
+  private Map<String, String> getConversionKeys(
+      Node srcRoot, CollectModuleMetadata modulePrePass, List<SourceFile> externs) {
+    Map<String, String> conversionKeys = new LinkedHashMap<>();
+    if (cache == null || hasErrors()) {
+      return conversionKeys;
+    }
+    String programKey = OutputCache.programKey(opts, CLANG_FORMAT, modulePrePass, externs);
+    if (programKey == null) {
+      return conversionKeys;
+    }
+    for (Node file : srcRoot.children()) {
+      String fileName = file.getSourceFileName();
+      conversionKeys.put(
+          fileName,
+          OutputCache.conversionKey(
+              programKey, fileName, compiler.getSourceFileContentByName(fileName).toString()));
+    }
+    return conversionKeys;
+  }
+
+  /**
+   * Formats the printed files with clang-format, batched across files, which saves starting a
+   * process per file. Code that clang-format already formatted before is taken from the cache.
+   */
+  private void formatWithClangFormat(List<PrintedFile> printedFiles, ConversionMetrics metrics) {
+    List<PrintedFile> toFormat = new ArrayList<>();
+    List<String> formatKeys = new ArrayList<>();
+    for (PrintedFile printedFile : printedFiles) {
+      if (printedFile.failure != null || printedFile.cached) {
+        continue;
+      }
+      if (cache != null) {
+        String formatKey = OutputCache.formatKey(printedFile.tsCode, CLANG_FORMAT);
+        String formatted = cache.get(formatKey);
+        if (formatted != null) {
+          printedFile.tsCode = formatted;
+          continue;
+        }
+        formatKeys.add(formatKey);
+      }
+      toFormat.add(printedFile);
+    }
+
+    List<String> unformattedCode = new ArrayList<>();
+    for (PrintedFile printedFile : toFormat) {
+      unformattedCode.add(printedFile.tsCode);
+    }
+    long[] formatNanos = new long[toFormat.size()];
+    List<String> formattedCode =
+        new ClangFormatter(CLANG_FORMAT, CLANG_FORMAT_TIMEOUT_MILLIS, opts.parallelism, errStream)
+            .formatAll(unformattedCode, formatNanos);
+    for (int i = 0; i < toFormat.size(); i++) {
+      metrics.getFile(toFormat.get(i).sourceFileName).clangFormatNanos = formatNanos[i];
+      String formatted = formattedCode.get(i);
+      if (formatted == null) {
+        // Could not be formatted, which must not end up in the cache.
+        toFormat.get(i).unformatted = true;
+        continue;
+      }
+      toFormat.get(i).tsCode = formatted;
+      if (cache != null) {
+        cache.put(formatKeys.get(i), formatted);
+      }
+    }
+  }
+
+  /**
+   * Prints a single file, formatting it only with the built-in formatter. Only reads the AST, the
+   * comments and the cache, so it is safe to call concurrently for different files.
+   */
+  private PrintedFile printFile(
+      Node file,
+      SourceExtractor extractor,
+      CompilerOptions compilerOpts,
+      NodeComments comments,
+      Map<String, String> cachedConversions) {
+    PrintedFile printedFile = new PrintedFile(file.getSourceFileName());
+    try {
+      printedFile.filepath = pathUtil.getFilePathWithoutExtension(file.getSourceFileName());
+      String cached = cachedConversions.get(file.getSourceFileName());
+      if (cached != null) {
+        printedFile.tsCode = cached;
+        printedFile.cached = true;
+        return printedFile;
+      }
+      CodeGeneratorFactory factory =
+          new CodeGeneratorFactory() {
+            @Override
+            public CodeGenerator getCodeGenerator(Format outputFormat, CodeConsumer cc) {
+              return new GentsCodeGenerator(cc, compilerOpts, comments, opts.externsMap, extractor);
+            }
+          };
+
+      String tsCode =
+          new CodePrinter.Builder(file)
+              .setCompilerOptions(opts.getCompilerOptions())
+              .setTypeRegistry(compiler.getTypeRegistry())
+              .setCodeGeneratorFactory(factory)
+              .setPrettyPrint(true)
+              .setLineBreak(true)
+              .setOutputTypes(true)
+              .build();
+
+      // For whatever reason closure sometimes prefixes the emit with an empty new line. Strip
+      // newlines not present in the original source.
+      CharSequence originalSourceCode =
+          compiler.getSourceFileContentByName(file.getSourceFileName());
+
+      Integer originalCount = countBeginningNewlines(originalSourceCode);
+      Integer newCount = countBeginningNewlines(tsCode);
+
+      if (newCount > originalCount) {
+        tsCode = tsCode.substring(newCount - originalCount);
+      }
+
+      printedFile.tsCode =
+          opts.formatter == Options.Formatter.BUILTIN ? TypeScriptFormatter.format(tsCode) : tsCode;
+    } catch (Throwable t) {
+      printedFile.failure = t;
+    }
+    return printedFile;
+  }
+
+  /**
+   * A compiler that files can be converted with concurrently. The conversion passes only modify the
+   * AST of their own file, but report changes and errors through the compiler, which does not
+   * synchronize its change tracking and error manager.
+   */
+  private static class SynchronizedCompiler extends Compiler {
+    @Override
+    public synchronized void reportChangeToEnclosingScope(Node n) {
+      super.reportChangeToEnclosingScope(n);
+    }
+
+    @Override
+    public synchronized void report(JSError error) {
+      super.report(error);
+    }
+  }
+
+  /** The result of printing a single file, which is either its code or the failure. */
+  private static class PrintedFile {
+    private final String sourceFileName;
+    private String filepath;
+    private String tsCode;
+    private Throwable failure;
+    /** Whether the code was taken from the conversion cache instead of being printed. */
+    private boolean cached = false;
+    /** Whether formatting failed, so the code is not formatted. */
+    private boolean unformatted = false;
+
+    private PrintedFile(String sourceFileName) {
+      this.sourceFileName = sourceFileName;
+    }
+  }
+
   private Integer countBeginningNewlines(CharSequence originalSourceCode) {
     Integer originalCount = 0;
     for (Integer i = 0; i < originalSourceCode.length(); i++) {
@@ -276,54 +616,6 @@ public class TypeScriptGenerator {
     return originalCount;
   }
 
-  /**
-   * Attempts to format the generated TypeScript using clang-format. On failure to format (i.e.
-   * clang-format does not exist), return the inputed string.
-   */
-  private static String tryClangFormat(String code) {
-    Process process = null;
-    try {
-      process = new ProcessBuilder().command(CLANG_FORMAT).start();
-      final OutputStream stdin = process.getOutputStream();
-      // stdout must be final for the nested object byteSource to return it.
-      final InputStream stdout = process.getInputStream();
-
-      // Write TypeScript code to stdin of the process
-      try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stdin, UTF_8)); ) {
-        writer.write(code);
-        writer.close();
-      }
-      return readStream(stdout);
-    } catch (IOException e) {
-      System.err.println("clang-format has failed to execute: " + e.getMessage());
-      return code;
-    } finally {
-      if (process != null) {
-        try {
-          System.err.println(readStream(process.getErrorStream()));
-        } catch (
-            @SuppressWarnings("unused")
-            IOException ignored) {
-          // Ignored.
-        }
-        // TODO(renez): Use .waitFor(n, TimeUnit.SECONDS) and .destroyForcibly() once we moved to
-        // Java 8.
-        process.destroy();
-      }
-    }
-  }
-
-  private static String readStream(final InputStream stream) throws IOException {
-    ByteSource byteSource =
-        new ByteSource() {
-          @Override
-          public InputStream openStream() throws IOException {
-            return stream;
-          }
-        };
-    return byteSource.asCharSource(UTF_8).read();
-  }
-
   /** Removes the root nodes for all the library files from the source node. */
   private static void stripNonCompiledNodes(Node n, Set<String> filesToCompile) {
     for (Node child : n.children()) {
@@ -366,5 +658,6 @@ public class TypeScriptGenerator {
 
     public Map<String, String> sourceFileMap = new LinkedHashMap<>();
     public String moduleRewriteLog = "";
+    ConversionMetrics metrics = new ConversionMetrics();
   }
 }
@@ -40,7 +40,7 @@ public class ClosureEnvTest {
 
   @Test
   public void shouldHaveErrorForNoExterns() throws Exception {
-    Options opts = new Options(new String[] {inputFile.toString(), "--debug"});
+    Options opts = new Options(new String[] {inputFile.toString(), "--debug", "--disable_cache"});
     final DeclarationGenerator generator = new DeclarationGenerator(opts);
     generator.generateDeclarations();
     assertThat(generator.hasErrors()).isTrue();
@@ -49,7 +49,10 @@ public class ClosureEnvTest {
   @Test
   public void shouldHaveNoErrorsForBrowserExterns() throws Exception {
     Options opts =
-        new Options(new String[] {inputFile.toString(), "--debug", "--closure_env", "BROWSER"});
+        new Options(
+            new String[] {
+              inputFile.toString(), "--debug", "--disable_cache", "--closure_env", "BROWSER"
+            });
     final DeclarationGenerator generator = new DeclarationGenerator(opts);
     generator.generateDeclarations();
     assertThat(generator.hasErrors()).isFalse();
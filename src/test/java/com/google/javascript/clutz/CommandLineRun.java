@@ -0,0 +1,65 @@
+package com.google.javascript.clutz;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A run of clutz from the command line in partial input mode, on inputs written to a temporary
+ * folder.
+ */
+final class CommandLineRun {
+  /** An input that provides {@code a.b}. */
+  static final String PROVIDE_A_B = "goog.provide('a.b');\n/** @const */ a.b.c = 1;\n";
+
+  final int exitCode;
+  /** Everything clutz printed, to stdout and stderr. */
+  final String output;
+
+  private CommandLineRun(int exitCode, String output) {
+    this.exitCode = exitCode;
+    this.output = output;
+  }
+
+  /** Writes a file to the temporary folder, replacing it if it exists. */
+  static File writeFile(TemporaryFolder tmpFolder, String name, String content) throws IOException {
+    File file = new File(tmpFolder.getRoot(), name);
+    Files.write(file.toPath(), content.getBytes(UTF_8));
+    return file;
+  }
+
+  /**
+   * Runs clutz with the flags on the inputs. The cache is disabled unless the flags set a cache
+   * directory, so that tests never read or write the user's cache.
+   */
+  static CommandLineRun run(List<String> flags, File... inputs) throws IOException {
+    List<String> args = new ArrayList<>();
+    args.add("--partialInput");
+    if (!flags.contains("--cache_dir")) {
+      args.add("--disable_cache");
+    }
+    args.addAll(flags);
+    args.add(ProgramSubject.resource("src/resources/partial_goog_base.js"));
+    for (File input : inputs) {
+      args.add(input.getPath());
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PrintStream stream = new PrintStream(out, true, UTF_8.name());
+    int exitCode = DeclarationGenerator.run(args.toArray(new String[0]), stream, stream);
+    return new CommandLineRun(exitCode, out.toString(UTF_8.name()));
+  }
+
+  /** Runs clutz like {@link #run(List, File...)}. */
+  static CommandLineRun run(File input, String... flags) throws IOException {
+    return run(Arrays.asList(flags), input);
+  }
+}
@@ -0,0 +1,78 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.SourceFile;
+import com.google.javascript.rhino.Node;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class FusedImportBasedMapBuilderTest {
+  private static final Set<String> GOOG_PROVIDES = new HashSet<>(Arrays.asList("a.b", "foo.bar"));
+
+  private static List<Node> parsedInputs;
+
+  @BeforeClass
+  public static void parseInputs() {
+    File[] files =
+        DeclarationGeneratorTest.getTestInputFile("partial")
+            .toFile()
+            .listFiles((dir, name) -> name.endsWith(".js"));
+    Arrays.sort(files);
+    Compiler compiler = new Compiler();
+    compiler.initOptions(new Options().getCompilerOptions());
+    parsedInputs = new ArrayList<>();
+    for (File file : files) {
+      parsedInputs.add(compiler.parse(SourceFile.fromFile(file.getPath())));
+    }
+  }
+
+  @Test
+  public void testMatchesIndividualBuilders() {
+    FusedImportBasedMapBuilder fused = new FusedImportBasedMapBuilder(GOOG_PROVIDES, 1);
+    fused.build(parsedInputs);
+
+    assertThat(fused.getImportRenameMap())
+        .containsExactlyEntriesIn(new ImportRenameMapBuilder().build(parsedInputs, GOOG_PROVIDES))
+        .inOrder();
+    assertThat(fused.getAliasMap())
+        .containsExactlyEntriesIn(new AliasMapBuilder().build(parsedInputs, GOOG_PROVIDES))
+        .inOrder();
+    assertThat(fused.getLegacyNamespaceReexportMap())
+        .containsExactlyEntriesIn(
+            new LegacyNamespaceReexportMapBuilder().build(parsedInputs, GOOG_PROVIDES))
+        .inOrder();
+    // Guard against the test data silently no longer exercising the builders.
+    assertThat(fused.getImportRenameMap()).isNotEmpty();
+    assertThat(fused.getAliasMap()).isNotEmpty();
+    assertThat(fused.getLegacyNamespaceReexportMap()).isNotEmpty();
+  }
+
+  @Test
+  public void testParallelBuildIsDeterministic() {
+    FusedImportBasedMapBuilder serial = new FusedImportBasedMapBuilder(GOOG_PROVIDES, 1);
+    serial.build(parsedInputs);
+    for (int i = 0; i < 5; i++) {
+      FusedImportBasedMapBuilder parallel = new FusedImportBasedMapBuilder(GOOG_PROVIDES, 4);
+      parallel.build(parsedInputs);
+
+      assertThat(parallel.getImportRenameMap())
+          .containsExactlyEntriesIn(serial.getImportRenameMap())
+          .inOrder();
+      assertThat(parallel.getAliasMap()).containsExactlyEntriesIn(serial.getAliasMap()).inOrder();
+      assertThat(parallel.getLegacyNamespaceReexportMap())
+          .containsExactlyEntriesIn(serial.getLegacyNamespaceReexportMap())
+          .inOrder();
+    }
+  }
+}
@@ -56,6 +56,21 @@ public class MultiFileTest {
         .generatesDeclarations(golden);
   }
 
+  @Test
+  public void googModuleWithParallelEmit() throws Exception {
+    File golden = input("googModule", "goog_module.d.ts");
+    ProgramSubject subject =
+        assertThatProgram(
+            ImmutableList.of(
+                input("googModule", "required_module.js"),
+                input("googModule", "required_module_default.js"),
+                input("googModule", "required.js"),
+                input("googModule", "goog_module.js")),
+            Collections.<File>emptyList());
+    subject.parallelism = 4;
+    subject.generatesDeclarations(golden);
+  }
+
   @Test
   public void depgraph() throws Exception {
     File golden = input("depgraph.d.ts");
@@ -119,10 +134,14 @@ public class MultiFileTest {
   }
 
   private File input(String filename) {
+    return input(name.getMethodName(), filename);
+  }
+
+  private File input(String testName, String filename) {
     Path root = FileSystems.getDefault().getPath(ProgramSubject.SOURCE_ROOT);
     Path testDir = root.resolve("src").resolve("test").resolve("java");
     String packageName = ProgramSubject.class.getPackage().getName();
     Path myPackage = testDir.resolve(packageName.replace('.', File.separatorChar));
-    return myPackage.resolve("testdata").resolve(name.getMethodName()).resolve(filename).toFile();
+    return myPackage.resolve("testdata").resolve(testName).resolve(filename).toFile();
   }
 }
@@ -0,0 +1,42 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class NamespaceTrieTest {
+  private final NamespaceTrie trie = new NamespaceTrie(ImmutableList.of("a", "a.b.c", "x.y"));
+
+  @Test
+  public void testContains() {
+    assertThat(trie.contains("a")).isTrue();
+    assertThat(trie.contains("a.b.c")).isTrue();
+    assertThat(trie.contains("a.b")).isFalse();
+    assertThat(trie.contains("x")).isFalse();
+  }
+
+  @Test
+  public void testContainsStrictPrefixOf() {
+    assertThat(trie.containsStrictPrefixOf("a.b")).isTrue();
+    assertThat(trie.containsStrictPrefixOf("a.b.c.d")).isTrue();
+    assertThat(trie.containsStrictPrefixOf("x.y.z")).isTrue();
+    assertThat(trie.containsStrictPrefixOf("a")).isFalse();
+    assertThat(trie.containsStrictPrefixOf("x.y")).isFalse();
+    assertThat(trie.containsStrictPrefixOf("x.yz")).isFalse();
+    assertThat(trie.containsStrictPrefixOf("ab.c")).isFalse();
+  }
+
+  @Test
+  public void testHasNamesUnder() {
+    assertThat(trie.hasNamesUnder("a")).isTrue();
+    assertThat(trie.hasNamesUnder("a.b")).isTrue();
+    assertThat(trie.hasNamesUnder("x")).isTrue();
+    assertThat(trie.hasNamesUnder("a.b.c")).isFalse();
+    assertThat(trie.hasNamesUnder("x.y")).isFalse();
+    assertThat(trie.hasNamesUnder("q")).isFalse();
+  }
+}
@@ -180,6 +180,19 @@ public class OptionsTest {
     assertThat(opts.externs).isEmpty();
   }
 
+  @Test
+  public void testParallelism() throws Exception {
+    assertThat(new Options(new String[] {"foo.js"}).parallelism).isEqualTo(1);
+    assertThat(new Options(new String[] {"--parallelism", "4", "foo.js"}).parallelism)
+        .isEqualTo(4);
+    try {
+      new Options(new String[] {"--parallelism", "0", "foo.js"});
+      fail("Should throw");
+    } catch (CmdLineException expected) {
+      assertThat(expected.getMessage()).isEqualTo("--parallelism must be at least 1");
+    }
+  }
+
   @Test
   public void testStopOption() throws Exception {
     Options opts =
@@ -0,0 +1,153 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gson.Gson;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class OutputCacheTest {
+
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testHitSkipsCompilation() throws Exception {
+    File cacheDir = tmpFolder.newFolder("cache");
+    File input = CommandLineRun.writeFile(tmpFolder, "input.js", CommandLineRun.PROVIDE_A_B);
+
+    CommandLineRun first = CommandLineRun.run(input, "--cache_dir", cacheDir.getPath());
+    assertThat(first.exitCode).isEqualTo(0);
+    assertThat(first.output).contains("declare module 'goog:a.b'");
+    File[] declarations = cacheDir.listFiles((dir, name) -> name.endsWith(".d.ts"));
+    assertThat(declarations).hasLength(1);
+    assertThat(cacheDir.listFiles()).hasLength(2);
+    assertThat(first.output)
+        .isEqualTo(new String(Files.readAllBytes(declarations[0].toPath()), UTF_8) + "\n");
+
+    // Tamper with the entry, so that a hit is distinguishable from a recompilation.
+    Files.write(declarations[0].toPath(), "// from the cache".getBytes(UTF_8));
+    assertThat(CommandLineRun.run(input, "--cache_dir", cacheDir.getPath()).output)
+        .isEqualTo("// from the cache\n");
+
+    // Changing an input changes the key.
+    Files.write(input.toPath(), "goog.provide('a.b');\n/** @const */ a.b.d = 1;".getBytes(UTF_8));
+    CommandLineRun changed = CommandLineRun.run(input, "--cache_dir", cacheDir.getPath());
+    assertThat(changed.output).contains("declare module 'goog:a.b'");
+    assertThat(cacheDir.listFiles()).hasLength(4);
+  }
+
+  @Test
+  public void testOutputFile() throws Exception {
+    File cacheDir = tmpFolder.newFolder("cache");
+    File input = CommandLineRun.writeFile(tmpFolder, "input.js", CommandLineRun.PROVIDE_A_B);
+    File output = new File(tmpFolder.getRoot(), "output.d.ts");
+
+    CommandLineRun first =
+        CommandLineRun.run(input, "--cache_dir", cacheDir.getPath(), "-o", output.getPath());
+    assertThat(first.output).isEmpty();
+    String declarations = new String(Files.readAllBytes(output.toPath()), UTF_8);
+    assertThat(declarations).contains("declare module 'goog:a.b'");
+
+    assertThat(output.delete()).isTrue();
+    CommandLineRun.run(input, "--cache_dir", cacheDir.getPath(), "-o", output.getPath());
+    assertThat(new String(Files.readAllBytes(output.toPath()), UTF_8)).isEqualTo(declarations);
+  }
+
+  @Test
+  public void testTracerModeSkipsCache() throws Exception {
+    File cacheDir = tmpFolder.newFolder("cache");
+    File input = CommandLineRun.writeFile(tmpFolder, "input.js", CommandLineRun.PROVIDE_A_B);
+
+    CommandLineRun.run(input, "--cache_dir", cacheDir.getPath());
+    File[] declarations = cacheDir.listFiles((dir, name) -> name.endsWith(".d.ts"));
+    Files.write(declarations[0].toPath(), "// from the cache".getBytes(UTF_8));
+
+    // The compiler only traces its passes if it runs.
+    CommandLineRun traced =
+        CommandLineRun.run(
+            input, "--cache_dir", cacheDir.getPath(), "--tracer_mode", "TIMING_ONLY");
+    assertThat(traced.output).doesNotContain("// from the cache");
+    assertThat(traced.output).contains("declare module 'goog:a.b'");
+    assertThat(traced.output).contains("Garbage collection stats");
+  }
+
+  @Test
+  public void testDiagnosticsAreReplayed() throws Exception {
+    File cacheDir = tmpFolder.newFolder("cache");
+    File input =
+        CommandLineRun.writeFile(tmpFolder, "broken.js", "goog.provide('a.b');\nlet x = ;");
+
+    CommandLineRun first = CommandLineRun.run(input, "--cache_dir", cacheDir.getPath());
+    assertThat(first.exitCode).isEqualTo(2);
+    assertThat(first.output).contains("ERROR");
+
+    CommandLineRun second = CommandLineRun.run(input, "--cache_dir", cacheDir.getPath());
+    assertThat(second.exitCode).isEqualTo(2);
+    assertThat(second.output).isEqualTo(first.output);
+  }
+
+  @Test
+  public void testDisableCache() throws Exception {
+    File cacheDir = tmpFolder.newFolder("cache");
+    File input = CommandLineRun.writeFile(tmpFolder, "input.js", CommandLineRun.PROVIDE_A_B);
+
+    assertThat(
+            CommandLineRun.run(input, "--cache_dir", cacheDir.getPath(), "--disable_cache")
+                .exitCode)
+        .isEqualTo(0);
+    assertThat(cacheDir.listFiles()).isEmpty();
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    Path cacheDir = tmpFolder.newFolder("cache").toPath();
+    long entrySize =
+        "x".length() + new Gson().toJson(new OutputCache.Metadata("", 0)).getBytes(UTF_8).length;
+    OutputCache cache = new OutputCache(cacheDir, 2 * entrySize);
+
+    put(cache, "first");
+    put(cache, "second");
+    setLastModified(cacheDir.resolve("first.json"), 1000);
+    setLastModified(cacheDir.resolve("second.json"), 2000);
+    // Reading "first" makes "second" the least recently used entry.
+    assertHit(cache, "first");
+
+    put(cache, "third");
+    assertHit(cache, "first");
+    assertThat(cache.open("second")).isNull();
+    assertThat(Files.exists(cacheDir.resolve("second.d.ts"))).isFalse();
+    assertHit(cache, "third");
+  }
+
+  private static void put(OutputCache cache, String key) throws Exception {
+    try (OutputCache.NewEntry entry = cache.newEntry(key);
+        OutputStream output = entry.tee(new ByteArrayOutputStream())) {
+      output.write("x".getBytes(UTF_8));
+      entry.commit("", 0);
+    }
+  }
+
+  private static void assertHit(OutputCache cache, String key) throws Exception {
+    try (OutputCache.CachedRun cached = cache.open(key)) {
+      assertThat(cached).isNotNull();
+      ByteArrayOutputStream declarations = new ByteArrayOutputStream();
+      cached.copyDeclarationsTo(declarations);
+      assertThat(declarations.toString(UTF_8.name())).isEqualTo("x");
+    }
+  }
+
+  private static void setLastModified(Path path, long millis) throws Exception {
+    Files.setLastModifiedTime(path, FileTime.fromMillis(millis));
+  }
+}
@@ -0,0 +1,49 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class OutputFileTest {
+
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testReplacesOutputOnSuccess() throws Exception {
+    File output = tmpFolder.newFile("output.d.ts");
+    Files.write(output.toPath(), "stale".getBytes(UTF_8));
+
+    assertThat(run(output)).isEqualTo(0);
+
+    assertThat(new String(Files.readAllBytes(output.toPath()), UTF_8))
+        .contains("declare namespace ಠ_ಠ.clutz.a {");
+    assertThat(tmpFolder.getRoot().list()).asList().containsExactly("input.js", "output.d.ts");
+  }
+
+  @Test
+  public void testLeavesNoPartialOutputOnFailure() throws Exception {
+    // The declarations cannot replace a directory, so the run fails after the emit.
+    File output = tmpFolder.newFolder("output.d.ts");
+    new File(output, "keep").createNewFile();
+
+    assertThat(run(output)).isEqualTo(3);
+
+    assertThat(output.list()).asList().containsExactly("keep");
+    assertThat(tmpFolder.getRoot().list()).asList().containsExactly("input.js", "output.d.ts");
+  }
+
+  private int run(File output) throws Exception {
+    File input =
+        CommandLineRun.writeFile(
+            tmpFolder, "input.js", "goog.provide('a.b');\n/** @const */ a.b = 1;\n");
+    return CommandLineRun.run(input, "-o", output.getPath()).exitCode;
+  }
+}
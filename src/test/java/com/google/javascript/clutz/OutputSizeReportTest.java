@@ -0,0 +1,93 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.Gson;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class OutputSizeReportTest {
+
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testAttributesEveryByte() throws Exception {
+    File output = tmpFolder.newFile("output.d.ts");
+    OutputSizeReport.Report report = generate(output, 1);
+
+    assertThat(report.totalBytes).isEqualTo(output.length());
+    assertThat(report.sections.keySet())
+        .containsExactly(
+            OutputSizeReport.HEADER,
+            OutputSizeReport.PROVIDES,
+            OutputSizeReport.EXTERN_SYMBOLS,
+            OutputSizeReport.UNPROVIDED_TYPES)
+        .inOrder();
+    List<String> rows = new ArrayList<>();
+    long previousBytes = Long.MAX_VALUE;
+    for (OutputSizeReport.Row row : report.rows) {
+      rows.add(row.section + " " + row.symbol + " " + new File(row.sourceFile).getName());
+      assertThat(row.bytes).isAtMost(previousBytes);
+      previousBytes = row.bytes;
+    }
+    assertThat(rows)
+        .containsExactly(
+            "header  ",
+            "provides a.b input.js",
+            "provides a.c input.js",
+            "externSymbols ExternThing externs.js",
+            "unprovidedTypes NotProvided unprovided.js");
+  }
+
+  @Test
+  public void testParallelEmitReportsTheSameSizes() throws Exception {
+    Gson gson = new Gson();
+    String serial = gson.toJson(generate(tmpFolder.newFile("serial.d.ts"), 1));
+    String parallel = gson.toJson(generate(tmpFolder.newFile("parallel.d.ts"), 4));
+    assertThat(parallel).isEqualTo(serial);
+  }
+
+  private OutputSizeReport.Report generate(File output, int parallelism) throws Exception {
+    File externs =
+        CommandLineRun.writeFile(
+            tmpFolder, "externs.js", "/** @constructor */ function ExternThing() {}\n");
+    File unprovided =
+        CommandLineRun.writeFile(
+            tmpFolder, "unprovided.js", "/** @constructor */ var NotProvided = function() {};\n");
+    File input =
+        CommandLineRun.writeFile(
+            tmpFolder,
+            "input.js",
+            "goog.provide('a.b');\n"
+                + "goog.provide('a.c');\n"
+                + "/** @param {NotProvided} p */ a.b = function(p) {};\n"
+                + "/** @const */ a.c = 1;\n");
+    File reportFile = new File(tmpFolder.getRoot(), "report.json");
+
+    List<String> flags =
+        ImmutableList.of(
+            "--parallelism",
+            String.valueOf(parallelism),
+            "--externs",
+            externs.getPath(),
+            "--size_report",
+            reportFile.getPath(),
+            "-o",
+            output.getPath());
+    assertThat(CommandLineRun.run(flags, unprovided, input).exitCode).isEqualTo(0);
+    return new Gson()
+        .fromJson(
+            new String(Files.readAllBytes(reportFile.toPath()), UTF_8),
+            OutputSizeReport.Report.class);
+  }
+}
@@ -0,0 +1,86 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Splitter;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.javascript.common.PersistentWorker;
+import com.google.javascript.common.PersistentWorker.WorkResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PersistentWorkerTest {
+
+  private static final String INPUT =
+      DeclarationGeneratorTest.getTestInputFile("partial/alias_const.js").toString();
+
+  /** The cache is disabled, so that every request really runs clutz. */
+  private static final String[] ARGS = {
+    "--partialInput", "--disable_cache", "src/resources/partial_goog_base.js", INPUT
+  };
+
+  @Test
+  public void testIsPersistentWorkerRequested() {
+    assertThat(PersistentWorker.isPersistentWorkerRequested(new String[] {"--persistent_worker"}))
+        .isTrue();
+    assertThat(PersistentWorker.isPersistentWorkerRequested(new String[] {"foo.js"})).isFalse();
+  }
+
+  @Test
+  public void testProcessesRequestsInSequence() throws Exception {
+    String requests = request(1, ARGS) + "\n" + request(2) + "\n" + request(3, ARGS);
+    List<WorkResponse> responses = runWorker(requests);
+
+    assertThat(responses).hasSize(3);
+    assertThat(responses.get(0).requestId).isEqualTo(1);
+    assertThat(responses.get(0).exitCode).isEqualTo(0);
+    assertThat(responses.get(0).output).contains("declare module 'goog:alias_const'");
+
+    // A failing request does not tear down the worker.
+    assertThat(responses.get(1).requestId).isEqualTo(2);
+    assertThat(responses.get(1).exitCode).isEqualTo(1);
+    assertThat(responses.get(1).output).contains("No files or externs were given");
+
+    // Every request runs with a fresh compiler, so repeated requests produce identical output.
+    assertThat(responses.get(2).requestId).isEqualTo(3);
+    assertThat(responses.get(2).output).isEqualTo(responses.get(0).output);
+  }
+
+  private static String request(int requestId, String... args) {
+    JsonObject request = new JsonObject();
+    JsonArray arguments = new JsonArray();
+    for (String arg : args) {
+      arguments.add(arg);
+    }
+    request.add("arguments", arguments);
+    request.addProperty("requestId", requestId);
+    return request.toString();
+  }
+
+  private static List<WorkResponse> runWorker(String requests) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int exitCode =
+        new PersistentWorker(
+                new ByteArrayInputStream(requests.getBytes(UTF_8)),
+                new PrintStream(out, true, UTF_8.name()),
+                DeclarationGenerator::run)
+            .run();
+    assertThat(exitCode).isEqualTo(0);
+
+    List<WorkResponse> responses = new ArrayList<>();
+    for (String line : Splitter.on('\n').omitEmptyStrings().split(out.toString(UTF_8.name()))) {
+      responses.add(new Gson().fromJson(line, WorkResponse.class));
+    }
+    return responses;
+  }
+}
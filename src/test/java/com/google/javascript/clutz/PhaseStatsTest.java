@@ -0,0 +1,106 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.Gson;
+import com.google.javascript.common.ParallelTasks;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PhaseStatsTest {
+
+  private static final long SPIN_CPU_NANOS = 20_000_000;
+
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testParallelTasksCountForRunningPhases() throws Exception {
+    PhaseStats stats = new PhaseStats(true);
+    PhaseStats.Phase outer = stats.start("outer");
+    PhaseStats.Phase inner = stats.start("inner");
+    List<Callable<Integer>> tasks = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      tasks.add(PhaseStatsTest::spin);
+    }
+    ParallelTasks.invokeAll(4, tasks, PhaseStats::measureForRunningPhase);
+    inner.close();
+    outer.close();
+
+    assertThat(inner.getResult().name).isEqualTo("inner");
+    assertThat(inner.getResult().wallNanos).isGreaterThan(0L);
+    assertThat(inner.getResult().cpuNanos).isAtLeast(4 * SPIN_CPU_NANOS);
+    assertThat(outer.getResult().cpuNanos).isAtLeast(inner.getResult().cpuNanos);
+    assertThat(outer.getResult().allocatedBytes).isAtLeast(inner.getResult().allocatedBytes);
+  }
+
+  @Test
+  public void testDisabled() {
+    PhaseStats stats = new PhaseStats(false);
+    try (PhaseStats.Phase phase = stats.start("phase")) {
+      assertThat(phase.getResult()).isNull();
+    }
+    Callable<Integer> task = PhaseStatsTest::spin;
+    assertThat(PhaseStats.measureForRunningPhase(task)).isSameInstanceAs(task);
+  }
+
+  @Test
+  public void testStatsFlag() throws Exception {
+    File input = CommandLineRun.writeFile(tmpFolder, "input.js", CommandLineRun.PROVIDE_A_B);
+    File statsFile = new File(tmpFolder.getRoot(), "stats.json");
+
+    assertThat(CommandLineRun.run(input, "--stats", statsFile.getPath()).exitCode).isEqualTo(0);
+
+    PhaseStats.Report report =
+        new Gson()
+            .fromJson(
+                new String(Files.readAllBytes(statsFile.toPath()), UTF_8), PhaseStats.Report.class);
+    assertThat(report.cacheHit).isFalse();
+    assertThat(report.parallelism).isEqualTo(1);
+    assertThat(report.total.name).isEqualTo("total");
+    List<String> names = new ArrayList<>();
+    long wallNanos = 0;
+    for (PhaseStats.PhaseResult phase : report.phases) {
+      names.add(phase.name);
+      wallNanos += phase.wallNanos;
+    }
+    assertThat(names)
+        .containsExactlyElementsIn(
+            ImmutableList.of(
+                "compile",
+                "buildImportMaps",
+                "precomputeChildLists",
+                "collectTypedefs",
+                "emitProvides",
+                "processExternSymbols",
+                "processUnprovidedTypes",
+                "declareLegacyNamespaceAliases",
+                "writeOutput"))
+        .inOrder();
+    assertThat(report.total.wallNanos).isAtLeast(wallNanos);
+    assertThat(report.total.cpuNanos).isGreaterThan(0L);
+  }
+
+  /** Spins until the calling thread used {@link #SPIN_CPU_NANOS} of CPU time. */
+  private static Integer spin() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    long end = bean.getCurrentThreadCpuTime() + SPIN_CPU_NANOS;
+    int count = 0;
+    while (bean.getCurrentThreadCpuTime() < end) {
+      count += new int[16].length;
+    }
+    return count;
+  }
+}
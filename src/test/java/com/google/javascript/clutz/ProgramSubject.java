@@ -63,6 +63,7 @@ class ProgramSubject extends Subject {
   public boolean emitBase = false;
   public String depgraph = null;
   public boolean debug = true;
+  public int parallelism = 1;
 
   static ProgramSubject assertThatProgram(String... sourceLines) {
     String sourceText = Joiner.on('\n').join(sourceLines);
@@ -126,6 +127,7 @@ class ProgramSubject extends Subject {
   private String[] parse() throws AssertionError {
     Options opts = new Options();
     opts.debug = debug;
+    opts.parallelism = parallelism;
     opts.skipEmitPattern = Pattern.compile(".*\\.skip\\.tsickle\\.js$");
     if (partialInput) {
       opts.partialInput = true;
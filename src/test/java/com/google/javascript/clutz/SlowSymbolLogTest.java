@@ -0,0 +1,70 @@
+package com.google.javascript.clutz;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SlowSymbolLogTest {
+
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testRecordsSymbolsOverThresholdSlowestFirst() {
+    SlowSymbolLog log = new SlowSymbolLog(10);
+    log.record("walk", "a.fast", "a.js", 10, TimeUnit.MILLISECONDS.toNanos(9));
+    log.record("walk", "a.slow", "a.js", 20, TimeUnit.MILLISECONDS.toNanos(10));
+    log.record("walkInnerSymbols", "a.slower", null, 30, TimeUnit.MILLISECONDS.toNanos(200));
+
+    List<String> symbols = new ArrayList<>();
+    for (SlowSymbolLog.Entry entry : log.getEntries()) {
+      symbols.add(entry.symbol);
+    }
+    assertThat(symbols).containsExactly("a.slower", "a.slow").inOrder();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    log.print(new PrintStream(out, true));
+    assertThat(new String(out.toByteArray(), UTF_8))
+        .isEqualTo(
+            "Symbols slower than 10ms to emit: 2\n"
+                + "  200ms walkInnerSymbols a.slower from unknown file, 30 bytes\n"
+                + "  10ms walk a.slow from a.js, 20 bytes\n");
+  }
+
+  @Test
+  public void testSlowSymbolThresholdFlag() throws Exception {
+    File input =
+        CommandLineRun.writeFile(
+            tmpFolder,
+            "input.js",
+            "goog.provide('a.B');\n"
+                + "/** @constructor */ a.B = function() {};\n"
+                + "/** @constructor */ a.B.Inner = function() {};\n");
+    File cacheDir = tmpFolder.newFolder("cache");
+
+    // The second run would be answered from the cache, which is not read while the flag is set.
+    for (int run = 0; run < 2; run++) {
+      CommandLineRun result =
+          CommandLineRun.run(
+              input, "--cache_dir", cacheDir.getPath(), "--slow_symbol_threshold_ms", "0");
+      assertThat(result.exitCode).isEqualTo(0);
+
+      String report = result.output;
+      assertThat(report).contains("Symbols slower than 0ms to emit: ");
+      assertThat(report).containsMatch("ms walk a\\.B from .*input\\.js, [1-9][0-9]* bytes\n");
+      assertThat(report)
+          .containsMatch("ms walkInnerSymbols a\\.B from .*input\\.js, [1-9][0-9]* bytes\n");
+    }
+  }
+}
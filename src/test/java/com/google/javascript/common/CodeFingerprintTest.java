@@ -0,0 +1,53 @@
+package com.google.javascript.common;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CodeFingerprintTest {
+
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testClassDirectoryChangesWhenAFileIsRewrittenInPlace() throws Exception {
+    File classes = tmpFolder.newFolder("classes");
+    Path classFile = new File(classes, "a/A.class").toPath();
+    Files.createDirectories(classFile.getParent());
+    Files.write(classFile, "version 1".getBytes(UTF_8));
+    String before = fingerprint(classes.toPath());
+
+    // Keeps the size and the modification times of the directories.
+    FileTime directoryTime = Files.getLastModifiedTime(classes.toPath());
+    Files.write(classFile, "version 2".getBytes(UTF_8));
+    Files.setLastModifiedTime(classes.toPath(), directoryTime);
+    assertThat(Files.getLastModifiedTime(classes.toPath())).isEqualTo(directoryTime);
+
+    assertThat(fingerprint(classes.toPath())).isNotEqualTo(before);
+    assertThat(fingerprint(classes.toPath())).isEqualTo(fingerprint(classes.toPath()));
+  }
+
+  @Test
+  public void testClassOfThisTest() throws Exception {
+    Hasher hasher = Hashing.sha256().newHasher();
+    CodeFingerprint.put(hasher, CodeFingerprintTest.class);
+    assertThat(hasher.hash().toString()).isNotEmpty();
+  }
+
+  private static String fingerprint(Path location) throws Exception {
+    Hasher hasher = Hashing.sha256().newHasher();
+    CodeFingerprint.put(hasher, location);
+    return hasher.hash().toString();
+  }
+}
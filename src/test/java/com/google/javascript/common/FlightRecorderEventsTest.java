@@ -0,0 +1,47 @@
+package com.google.javascript.common;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.function.Supplier;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class FlightRecorderEventsTest {
+
+  private static final Supplier<String> FALLBACK = () -> "fallback";
+
+  @Test
+  public void testLoadsFallbackForMissingClass() {
+    Supplier<?> loaded =
+        FlightRecorderEvents.load(
+            Supplier.class, "com.google.javascript.common.JfrMissingEvents", FALLBACK);
+    assertThat(loaded).isSameInstanceAs(FALLBACK);
+  }
+
+  @Test
+  public void testLoadsPackagePrivateClass() {
+    assumeTrue(hasFlightRecorder());
+    Supplier<?> loaded =
+        FlightRecorderEvents.load(Supplier.class, Events.class.getName(), FALLBACK);
+    assertThat(loaded.get()).isEqualTo("events");
+  }
+
+  private static boolean hasFlightRecorder() {
+    try {
+      Class.forName("jdk.jfr.Event");
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static final class Events implements Supplier<String> {
+    @Override
+    public String get() {
+      return "events";
+    }
+  }
+}
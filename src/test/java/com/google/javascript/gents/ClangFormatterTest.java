@@ -0,0 +1,119 @@
+package com.google.javascript.gents;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ClangFormatterTest {
+
+  /**
+   * A stand-in for clang-format that upper cases its input, and records every invocation so tests
+   * can count the started processes.
+   */
+  private static final String FAKE_CLANG_FORMAT =
+      "#!/bin/sh\n"
+          + "echo run >> \"$0.runs\"\n"
+          + "if [ \"$1\" = \"-i\" ]; then\n"
+          + "  shift 2\n"
+          + "  for f in \"$@\"; do tr a-z A-Z < \"$f\" > \"$f.tmp\" && mv \"$f.tmp\" \"$f\"; done\n"
+          + "else\n"
+          + "  tr a-z A-Z\n"
+          + "fi\n";
+
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+  private final PrintStream errStream = new PrintStream(errors, true);
+
+  @Test
+  public void testFormatsBatchInOneProcess() throws Exception {
+    File binary = writeScript("clang-format", FAKE_CLANG_FORMAT);
+    List<String> codes = new ArrayList<>();
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      codes.add("let x" + i + " = 1;\n");
+      expected.add("LET X" + i + " = 1;\n");
+    }
+
+    ClangFormatter formatter = new ClangFormatter(binary.getPath(), 10_000, 2, errStream);
+    assertThat(formatter.formatAll(codes)).containsExactlyElementsIn(expected).inOrder();
+    // 100 files fit into two batches.
+    assertThat(countRuns(binary)).isEqualTo(2);
+  }
+
+  @Test
+  public void testFallsBackToOneProcessPerFile() throws Exception {
+    // Fails on batches, but formats single files from stdin.
+    File binary =
+        writeScript("clang-format", FAKE_CLANG_FORMAT.replace("  shift 2\n", "  exit 1\n"));
+    ClangFormatter formatter = new ClangFormatter(binary.getPath(), 10_000, 1, errStream);
+    assertThat(formatter.formatAll(ImmutableList.of("a", "b", "c")))
+        .containsExactly("A", "B", "C")
+        .inOrder();
+  }
+
+  @Test
+  public void testKillsHangingProcess() throws Exception {
+    File binary = writeScript("clang-format", "#!/bin/sh\necho run >> \"$0.runs\"\nsleep 60\n");
+    ClangFormatter formatter = new ClangFormatter(binary.getPath(), 100, 1, errStream);
+    long start = System.nanoTime();
+    assertThat(formatter.formatAll(ImmutableList.of("a", "b"))).containsExactly(null, null);
+    assertThat(System.nanoTime() - start).isLessThan(10_000_000_000L);
+    // The files of a batch that timed out are not retried one by one.
+    assertThat(countRuns(binary)).isEqualTo(1);
+    assertThat(new String(errors.toByteArray(), UTF_8))
+        .contains("clang-format has timed out after 100ms on a batch of 2 files");
+  }
+
+  @Test
+  public void testMissingBinaryFormatsNothing() throws Exception {
+    ClangFormatter formatter =
+        new ClangFormatter(
+            new File(tmpFolder.getRoot(), "missing").getPath(), 10_000, 1, errStream);
+    assertThat(formatter.formatAll(ImmutableList.of("a", "b"))).containsExactly(null, null);
+  }
+
+  @Test
+  public void testReportsErrorsToErrorStream() throws Exception {
+    // More errors than fit into a pipe buffer, which must not block clang-format.
+    File binary =
+        writeScript(
+            "clang-format",
+            "#!/bin/sh\n"
+                + "i=0\n"
+                + "while [ $i -lt 2000 ]; do\n"
+                + "  echo \"error $i: lorem ipsum dolor sit amet consectetur adipiscing\" >&2\n"
+                + "  i=$((i+1))\n"
+                + "done\n"
+                + "exit 1\n");
+    ClangFormatter formatter = new ClangFormatter(binary.getPath(), 10_000, 1, errStream);
+    assertThat(formatter.format("a")).isNull();
+    String output = new String(errors.toByteArray(), UTF_8);
+    assertThat(output).contains("error 1999: lorem ipsum");
+    assertThat(output).contains("clang-format has failed with exit code 1");
+  }
+
+  private File writeScript(String name, String content) throws Exception {
+    File file = tmpFolder.newFile(name);
+    Files.write(file.toPath(), content.getBytes(UTF_8));
+    assertThat(file.setExecutable(true)).isTrue();
+    return file;
+  }
+
+  private static int countRuns(File binary) throws Exception {
+    return Files.readAllLines(new File(binary.getPath() + ".runs").toPath(), UTF_8).size();
+  }
+}
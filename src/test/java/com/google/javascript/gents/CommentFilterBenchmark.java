@@ -0,0 +1,70 @@
+package com.google.javascript.gents;
+
+import com.google.javascript.jscomp.parsing.parser.trees.Comment;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Compares the speed of {@link CommentFilter} with the regular expressions it replaced, on the
+ * comments of the gents test inputs. Run from the repository root, with the test classpath:
+ *
+ * <pre>
+ * java com.google.javascript.gents.CommentFilterBenchmark [rounds]
+ * </pre>
+ */
+public final class CommentFilterBenchmark {
+  private static final int WARMUP_ROUNDS = 200;
+
+  public static void main(String[] args) throws IOException {
+    int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    List<Comment> comments = CommentFilterTest.testInputComments();
+    long chars = 0;
+    for (Comment c : comments) {
+      chars += c.value.length();
+    }
+    System.out.println(
+        comments.size() + " comments, " + chars + " characters, " + rounds + " rounds");
+
+    for (int i = 0; i < 2; i++) {
+      // Alternate, so neither filter runs on a colder JIT than the other.
+      run("regex", RegexCommentFilter::filter, comments, rounds);
+      run("scanner", CommentFilter::filter, comments, rounds);
+    }
+  }
+
+  private static void run(
+      String name,
+      BiFunction<Comment.Type, String, String> filter,
+      List<Comment> comments,
+      int rounds) {
+    filterAll(filter, comments, WARMUP_ROUNDS);
+    long start = System.nanoTime();
+    int length = filterAll(filter, comments, rounds);
+    long nanos = System.nanoTime() - start;
+    System.out.println(
+        "  "
+            + name
+            + ": "
+            + TimeUnit.NANOSECONDS.toMillis(nanos)
+            + "ms, "
+            + nanos / ((long) rounds * comments.size())
+            + "ns per comment (output "
+            + length
+            + " characters)");
+  }
+
+  private static int filterAll(
+      BiFunction<Comment.Type, String, String> filter, List<Comment> comments, int rounds) {
+    int length = 0;
+    for (int i = 0; i < rounds; i++) {
+      for (Comment c : comments) {
+        length += filter.apply(c.type, c.value).length();
+      }
+    }
+    return length;
+  }
+
+  private CommentFilterBenchmark() {}
+}
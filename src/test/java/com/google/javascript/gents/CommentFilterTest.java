@@ -0,0 +1,119 @@
+package com.google.javascript.gents;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.SourceFile;
+import com.google.javascript.jscomp.parsing.parser.trees.Comment;
+import com.google.javascript.jscomp.parsing.parser.trees.Comment.Type;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CommentFilterTest {
+
+  /** Comments whose filtering depends on the details of the regular expressions. */
+  private static final ImmutableList<String> EDGE_CASES =
+      ImmutableList.of(
+          "/** @param {string} x */",
+          "/**@param {string} x */",
+          "/**\n * @param {string} x\n * @param {number} y */",
+          "/**\n * @param {string} x The {@link Foo} thing\n */",
+          "/**\n * @param {{\n *   a: number\n * }} opts\n * @return {number}\n */",
+          "/**\n * @param {number} y\n *     Explanation here\n */",
+          "/**\n * @param {string}\n *     name text\n */",
+          "/**\n * @param {string} name*  text\n */",
+          "/**\n * @return {string}\n *\n * Some text\n */",
+          "/**\n * @suppress {extraRequire}\n * \n * @returns {Foo}\n * @suppress {checkTypes}\n */",
+          "/**\n * @const {number}\n * \n * @constructor\n * @return {string}\n *     The result\n */",
+          "/**\n * @extends {Base}\n * @param {string} x\n * Some text }\n */",
+          "/** @const {x} foo\n * @private\n */",
+          "/**\n * @typedef {{\n *   a: number,\n * }}\n */",
+          "/** @typedef {Foo} Some {@link Bar} text */",
+          "/** @constant @constructorFoo @abstractly */",
+          "/** @export {Foo} */",
+          "/** @export {string} desc */",
+          "/**\r\n * @param {string} x\r\n */",
+          "/**\n *\n */",
+          "// goog.scope",
+          "/* text // goog.scope */",
+          "///goog.scope\n");
+
+  @Test
+  public void testRemovesTypes() {
+    assertThat(CommentFilter.filter(Type.JSDOC, "/**\n * @param {string} x The x.\n */"))
+        .isEqualTo("/**\n * @param x The x.\n */");
+    assertThat(CommentFilter.filter(Type.JSDOC, "/**\n * Text.\n * @constructor\n */"))
+        .isEqualTo("/**\n * Text.\n */");
+    assertThat(CommentFilter.filter(Type.JSDOC, "/** @private {number} */")).isEmpty();
+  }
+
+  @Test
+  public void testJoinsExplanatoryText() {
+    assertThat(
+            CommentFilter.filter(Type.JSDOC, "/**\n * @return {string}\n *     The result.\n */"))
+        .isEqualTo("/**\n * @return The result.\n */");
+  }
+
+  @Test
+  public void testRemovesGoogScopeMarkers() {
+    assertThat(CommentFilter.filter(Type.LINE, "// goog.scope")).isEmpty();
+    assertThat(CommentFilter.filter(Type.LINE, "// goog.scope is closed")).isEqualTo("is closed");
+  }
+
+  @Test
+  public void testMatchesRegexFilterOnEdgeCases() {
+    for (String comment : EDGE_CASES) {
+      Type type = comment.startsWith("/**") ? Type.JSDOC : Type.LINE;
+      assertWithMessage(comment)
+          .that(CommentFilter.filter(type, comment))
+          .isEqualTo(RegexCommentFilter.filter(type, comment));
+    }
+  }
+
+  @Test
+  public void testMatchesRegexFilterOnTestInputs() throws IOException {
+    List<Comment> comments = testInputComments();
+    assertThat(comments).isNotEmpty();
+    for (Comment c : comments) {
+      assertWithMessage(c.value)
+          .that(CommentFilter.filter(c.type, c.value))
+          .isEqualTo(RegexCommentFilter.filter(c.type, c.value));
+    }
+  }
+
+  /** Returns the comments of all JavaScript inputs of the gents tests. */
+  static List<Comment> testInputComments() throws IOException {
+    List<SourceFile> sourceFiles = new ArrayList<>();
+    for (String dir : ImmutableList.of("singleTests", "multiTests")) {
+      List<Path> inputs;
+      try (Stream<Path> paths = Files.walk(TypeScriptGeneratorTest.getTestDirPath(dir))) {
+        inputs =
+            paths.filter(p -> p.toString().endsWith(".js")).sorted().collect(Collectors.toList());
+      }
+      for (Path input : inputs) {
+        sourceFiles.add(SourceFile.fromFile(input.toString(), UTF_8));
+      }
+    }
+    Compiler compiler = new Compiler();
+    compiler.init(ImmutableList.of(), sourceFiles, new Options().getCompilerOptions());
+    compiler.parse();
+
+    List<Comment> comments = new ArrayList<>();
+    for (SourceFile sourceFile : sourceFiles) {
+      comments.addAll(compiler.getComments(sourceFile.getName()));
+    }
+    return comments;
+  }
+}
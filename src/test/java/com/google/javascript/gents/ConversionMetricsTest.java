@@ -0,0 +1,84 @@
+package com.google.javascript.gents;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.javascript.jscomp.SourceFile;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ConversionMetricsTest {
+
+  private static final String LIB = "goog.module('lib');\nexports.x = 1;\n";
+  private static final String MAIN =
+      "goog.module('main');\nconst lib = goog.require('lib');\n/** Doc. */\nlet y = lib.x;\n";
+
+  @Test
+  public void testRecordsEveryConvertedFile() throws Exception {
+    Options options = new Options();
+    // Keeps the test independent of the clang-format binary.
+    options.formatter = Options.Formatter.BUILTIN;
+    TypeScriptGenerator gents = new TypeScriptGenerator(options);
+    ByteArrayOutputStream errStream = new ByteArrayOutputStream();
+    gents.setErrorStream(new PrintStream(errStream));
+
+    TypeScriptGenerator.GentsResult result =
+        gents.generateTypeScript(
+            ImmutableSet.of("main.js"),
+            ImmutableList.of(
+                SourceFile.fromCode("lib.js", LIB), SourceFile.fromCode("main.js", MAIN)),
+            Collections.emptyList());
+    assertThat(errStream.toString(UTF_8.name())).isEmpty();
+
+    JsonObject report = new JsonParser().parse(result.metrics.toJson()).getAsJsonObject();
+    assertThat(keys(report.getAsJsonObject("programNanos")))
+        .containsExactly("compile", "RemoveGoogScopePass", "CollectModuleMetadata")
+        .inOrder();
+    JsonArray files = report.getAsJsonArray("files");
+    assertThat(files.size()).isEqualTo(1);
+    JsonObject main = files.get(0).getAsJsonObject();
+    assertThat(main.get("file").getAsString()).isEqualTo("main.js");
+    assertThat(main.get("inputBytes").getAsLong()).isEqualTo(MAIN.length());
+    assertThat(main.get("outputBytes").getAsLong())
+        .isEqualTo(result.sourceFileMap.get("main").length());
+    assertThat(main.get("astNodes").getAsInt()).isGreaterThan(0);
+    assertThat(main.get("linkedComments").getAsInt()).isEqualTo(1);
+    assertThat(main.get("cached").getAsBoolean()).isFalse();
+    assertThat(keys(main.getAsJsonObject("passNanos")))
+        .containsExactly(
+            "CommentLinkingPass",
+            "ModuleConversionPass",
+            "TypeConversionPass",
+            "TypeAnnotationPass",
+            "StyleFixPass")
+        .inOrder();
+
+    ByteArrayOutputStream summary = new ByteArrayOutputStream();
+    result.metrics.printSummary(new PrintStream(summary, true, UTF_8.name()));
+    assertThat(summary.toString(UTF_8.name()))
+        .startsWith("Conversion metrics: 1 files (0 cached), " + MAIN.length() + " input bytes");
+    assertThat(summary.toString(UTF_8.name())).contains("Slowest files:\n  main.js: ");
+  }
+
+  private static List<String> keys(JsonObject object) {
+    List<String> keys = new ArrayList<>();
+    for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+      keys.add(entry.getKey());
+    }
+    return keys;
+  }
+}
@@ -0,0 +1,41 @@
+package com.google.javascript.gents;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.javascript.jscomp.Compiler;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class NamespaceTrieTest {
+  private final NamespaceTrie trie = new NamespaceTrie(ImmutableList.of("a", "a.b.c", "x.y"));
+
+  @Test
+  public void testFindLongestPrefix() {
+    assertThat(trie.findLongestPrefix("a")).isEqualTo("a");
+    assertThat(trie.findLongestPrefix("a.b")).isEqualTo("a");
+    assertThat(trie.findLongestPrefix("a.b.c")).isEqualTo("a.b.c");
+    assertThat(trie.findLongestPrefix("a.b.c.d")).isEqualTo("a.b.c");
+    assertThat(trie.findLongestPrefix("x.y.z")).isEqualTo("x.y");
+  }
+
+  @Test
+  public void testFindLongestPrefixMatchesWholeSegments() {
+    assertThat(trie.findLongestPrefix("ab")).isNull();
+    assertThat(trie.findLongestPrefix("x")).isNull();
+    assertThat(trie.findLongestPrefix("x.yz")).isNull();
+    assertThat(trie.findLongestPrefix("q.a")).isNull();
+    assertThat(trie.findLongestPrefix(null)).isNull();
+  }
+
+  @Test
+  public void testReplacePrefixInName() {
+    NameUtil nameUtil = new NameUtil(new Compiler());
+    assertThat(nameUtil.replacePrefixInName("a.b", "a.b", "C")).isEqualTo("C");
+    assertThat(nameUtil.replacePrefixInName("a.b.c", "a.b", "C")).isEqualTo("C.c");
+    assertThat(nameUtil.replacePrefixInName("a.bc", "a.b", "C")).isEqualTo("a.bc");
+    assertThat(nameUtil.replacePrefixInName("x.a.b", "a.b", "C")).isEqualTo("x.a.b");
+  }
+}
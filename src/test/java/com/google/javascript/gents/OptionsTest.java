@@ -56,6 +56,26 @@ public class OptionsTest {
     }
   }
 
+  @Test
+  public void testParallelism() throws Exception {
+    assertThat(new Options(new String[] {"foo.js"}).parallelism).isEqualTo(1);
+    assertThat(new Options(new String[] {"foo.js", "--parallelism", "4"}).parallelism).isEqualTo(4);
+    try {
+      new Options(new String[] {"foo.js", "--parallelism", "0"});
+      fail("Should throw");
+    } catch (CmdLineException expected) {
+      assertThat(expected.getMessage()).isEqualTo("--parallelism must be at least 1");
+    }
+  }
+
+  @Test
+  public void testFormatter() throws Exception {
+    assertThat(new Options(new String[] {"foo.js"}).formatter)
+        .isEqualTo(Options.Formatter.CLANG_FORMAT);
+    assertThat(new Options(new String[] {"foo.js", "--formatter", "BUILTIN"}).formatter)
+        .isEqualTo(Options.Formatter.BUILTIN);
+  }
+
   @Test
   public void testStopOption() throws Exception {
     Options opts =
@@ -0,0 +1,101 @@
+package com.google.javascript.gents;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.javascript.jscomp.SourceFile;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class OutputCacheTest {
+
+  private static final String LIB = "goog.module('lib');\nexports.x = 1;\n";
+  private static final String MAIN = "goog.module('main');\nconst lib = goog.require('lib');\n";
+
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testConversionHitSkipsPrinting() throws Exception {
+    File cacheDir = tmpFolder.newFolder("cache");
+
+    Map<String, String> first = convert(cacheDir, MAIN, LIB);
+    assertThat(first.get("main")).contains("from 'goog:lib';");
+    File[] entries = cacheDir.listFiles();
+    assertThat(entries).hasLength(1);
+
+    // Tamper with the entry, so that a hit is distinguishable from a conversion.
+    Files.write(entries[0].toPath(), "// from the cache\n".getBytes(UTF_8));
+    assertThat(convert(cacheDir, MAIN, LIB)).containsExactly("main", "// from the cache\n");
+  }
+
+  @Test
+  public void testChangesMissTheCache() throws Exception {
+    File cacheDir = tmpFolder.newFolder("cache");
+    convert(cacheDir, MAIN, LIB);
+
+    // Changing the converted file changes its key.
+    convert(cacheDir, MAIN + "let y = 2;\n", LIB);
+    assertThat(cacheDir.listFiles()).hasLength(2);
+
+    // So does changing the module metadata of a dependency.
+    convert(cacheDir, MAIN, "goog.module('lib');\nexports.z = 1;\n");
+    assertThat(cacheDir.listFiles()).hasLength(3);
+
+    // But not changing a dependency without changing its metadata.
+    convert(cacheDir, MAIN, LIB + "let unrelated = 2;\n");
+    assertThat(cacheDir.listFiles()).hasLength(3);
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    Path cacheDir = tmpFolder.newFolder("cache").toPath();
+    OutputCache cache = new OutputCache(cacheDir, 2);
+
+    cache.put("first", "x");
+    cache.put("second", "x");
+    Files.setLastModifiedTime(cacheDir.resolve("first.ts"), FileTime.fromMillis(1000));
+    Files.setLastModifiedTime(cacheDir.resolve("second.ts"), FileTime.fromMillis(2000));
+    // Reading "first" makes "second" the least recently used entry.
+    assertThat(cache.get("first")).isEqualTo("x");
+
+    cache.put("third", "x");
+    assertThat(cache.get("first")).isEqualTo("x");
+    assertThat(cache.get("second")).isNull();
+    assertThat(cache.get("third")).isEqualTo("x");
+  }
+
+  private static Map<String, String> convert(File cacheDir, String main, String lib)
+      throws Exception {
+    Options options = new Options();
+    options.cacheDir = cacheDir.getPath();
+    // Keeps the test independent of the clang-format binary.
+    options.formatter = Options.Formatter.BUILTIN;
+    TypeScriptGenerator gents = new TypeScriptGenerator(options);
+    ByteArrayOutputStream errStream = new ByteArrayOutputStream();
+    gents.setErrorStream(new PrintStream(errStream));
+
+    Map<String, String> result =
+        gents.generateTypeScript(
+                ImmutableSet.of("main.js"),
+                ImmutableList.of(
+                    SourceFile.fromCode("lib.js", lib), SourceFile.fromCode("main.js", main)),
+                Collections.emptyList())
+            .sourceFileMap;
+    assertThat(errStream.toString(UTF_8.name())).isEmpty();
+    return result;
+  }
+}
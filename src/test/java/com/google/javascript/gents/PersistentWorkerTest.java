@@ -0,0 +1,102 @@
+package com.google.javascript.gents;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Splitter;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.javascript.common.PersistentWorker;
+import com.google.javascript.common.PersistentWorker.WorkResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PersistentWorkerTest {
+
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testProcessesRequestsInSequence() throws Exception {
+    String valid =
+        TypeScriptGeneratorTest.getTestDirPath(
+                TypeScriptGeneratorTest.singleTestPath, "module_default.js")
+            .toString();
+    String broken = writeFile("broken.js", "goog.module('a.broken');\nlet x = ;");
+
+    String requests =
+        request(1, "--convert", valid, "--log", "-")
+            + "\n"
+            + request(2, "--convert", broken)
+            + "\n"
+            + request(3)
+            + "\n"
+            + request(4, "--convert", valid, "--log", "-");
+    List<WorkResponse> responses = runWorker(requests);
+
+    assertThat(responses).hasSize(4);
+    assertThat(responses.get(0).requestId).isEqualTo(1);
+    assertThat(responses.get(0).exitCode).isEqualTo(0);
+    assertThat(responses.get(0).output).contains("function B(): number {");
+    assertThat(responses.get(0).output).contains("\"originalName\": \"default.A.B\"");
+
+    // Errors reported by the GentsErrorManager are returned with their request.
+    assertThat(responses.get(1).requestId).isEqualTo(2);
+    assertThat(responses.get(1).exitCode).isEqualTo(2);
+    assertThat(responses.get(1).output).contains("ERROR");
+
+    assertThat(responses.get(2).requestId).isEqualTo(3);
+    assertThat(responses.get(2).exitCode).isEqualTo(1);
+    assertThat(responses.get(2).output).contains("No files were given");
+
+    // Failing requests do not tear down the worker or leak state into later requests.
+    assertThat(responses.get(3).requestId).isEqualTo(4);
+    assertThat(responses.get(3).exitCode).isEqualTo(0);
+    assertThat(responses.get(3).output).isEqualTo(responses.get(0).output);
+  }
+
+  private String writeFile(String name, String content) throws Exception {
+    File file = tmpFolder.newFile(name);
+    Files.asCharSink(file, UTF_8).write(content);
+    return file.getPath();
+  }
+
+  private static String request(int requestId, String... args) {
+    JsonObject request = new JsonObject();
+    JsonArray arguments = new JsonArray();
+    for (String arg : args) {
+      arguments.add(arg);
+    }
+    request.add("arguments", arguments);
+    request.addProperty("requestId", requestId);
+    return request.toString();
+  }
+
+  private static List<WorkResponse> runWorker(String requests) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int exitCode =
+        new PersistentWorker(
+                new ByteArrayInputStream(requests.getBytes(UTF_8)),
+                new PrintStream(out, true, UTF_8.name()),
+                TypeScriptGenerator::run)
+            .run();
+    assertThat(exitCode).isEqualTo(0);
+
+    List<WorkResponse> responses = new ArrayList<>();
+    for (String line : Splitter.on('\n').omitEmptyStrings().split(out.toString(UTF_8.name()))) {
+      responses.add(new Gson().fromJson(line, WorkResponse.class));
+    }
+    return responses;
+  }
+}
@@ -0,0 +1,166 @@
+package com.google.javascript.gents;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.NodeTraversal;
+import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
+import com.google.javascript.jscomp.SourceFile;
+import com.google.javascript.rhino.IR;
+import com.google.javascript.rhino.Node;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TraversalSchedulerTest {
+
+  private final Compiler compiler = new Compiler();
+  private final TraversalScheduler scheduler = new TraversalScheduler(compiler);
+  private final List<String> visits = new ArrayList<>();
+
+  @Test
+  public void testFusedCallbacksVisitEveryNodeInOrder() {
+    Node root = compiler.parse(SourceFile.fromCode("a.js", "f(x);"));
+
+    scheduler.walk("pass", root, new Recorder("a"), new Recorder("b"));
+
+    assertThat(visits)
+        .containsExactly(
+            "a NAME f",
+            "b NAME f",
+            "a NAME x",
+            "b NAME x",
+            "a CALL",
+            "b CALL",
+            "a EXPR_RESULT f",
+            "b EXPR_RESULT f",
+            "a SCRIPT",
+            "b SCRIPT")
+        .inOrder();
+    assertThat(scheduler.getWalks("pass")).isEqualTo(1);
+  }
+
+  @Test
+  public void testFusedCallbacksDescendIndependently() {
+    Node root = compiler.parse(SourceFile.fromCode("a.js", "f(x);"));
+
+    AbstractTopLevelCallback topLevel =
+        new AbstractTopLevelCallback() {
+          @Override
+          public void visit(NodeTraversal t, Node n, Node parent) {
+            visits.add("top " + n.getToken());
+          }
+        };
+    scheduler.walk("pass", root, topLevel, new Recorder("all"));
+
+    assertThat(visits)
+        .containsExactly(
+            "all NAME f",
+            "all NAME x",
+            "all CALL",
+            "top EXPR_RESULT",
+            "all EXPR_RESULT f",
+            "top SCRIPT",
+            "all SCRIPT")
+        .inOrder();
+  }
+
+  @Test
+  public void testDetachedNodesAreNotVisitedByLaterCallbacks() {
+    Node root = compiler.parse(SourceFile.fromCode("a.js", "f(); g();"));
+
+    AbstractPostOrderCallback detachF =
+        new AbstractPostOrderCallback() {
+          @Override
+          public void visit(NodeTraversal t, Node n, Node parent) {
+            if (n.isExprResult() && n.getFirstFirstChild().matchesQualifiedName("f")) {
+              n.detach();
+            }
+          }
+        };
+    scheduler.walk("pass", root, detachF, new Recorder("after"));
+
+    assertThat(visits).contains("after NAME f");
+    assertThat(visits).doesNotContain("after EXPR_RESULT f");
+    assertThat(visits).contains("after EXPR_RESULT g");
+  }
+
+  @Test
+  public void testReplacingNodesVisitedByLaterCallbacksFails() {
+    Node root = compiler.parse(SourceFile.fromCode("a.js", "f(); g();"));
+
+    AbstractPostOrderCallback replaceF =
+        new AbstractPostOrderCallback() {
+          @Override
+          public void visit(NodeTraversal t, Node n, Node parent) {
+            if (n.isExprResult() && n.getFirstFirstChild().matchesQualifiedName("f")) {
+              n.replaceWith(IR.exprResult(IR.call(IR.name("h"))));
+            }
+          }
+        };
+    try {
+      scheduler.walk("pass", root, replaceF, new Recorder("after"));
+      fail();
+    } catch (RuntimeException expected) {
+      // NodeTraversal wraps the IllegalStateException.
+      assertThat(expected).hasMessageThat().contains("replaced a node");
+    }
+
+    // The last callback may replace the nodes it visits.
+    root = compiler.parse(SourceFile.fromCode("b.js", "f(); g();"));
+    visits.clear();
+    scheduler.walk("pass", root, new Recorder("before"), replaceF);
+    assertThat(visits).contains("before EXPR_RESULT f");
+    assertThat(root.getFirstFirstChild().getFirstChild().getString()).isEqualTo("h");
+  }
+
+  @Test
+  public void testPassesFuseWalks() throws Exception {
+    Options options = new Options();
+    options.debug = true;
+    options.formatter = Options.Formatter.BUILTIN;
+    TypeScriptGenerator gents = new TypeScriptGenerator(options);
+    ByteArrayOutputStream errStream = new ByteArrayOutputStream();
+    gents.setErrorStream(new PrintStream(errStream));
+
+    gents.generateTypeScript(
+        ImmutableSet.of("a.js"),
+        ImmutableList.of(SourceFile.fromCode("a.js", "/** @constructor */ function A() {}")),
+        Collections.emptyList());
+
+    String timings = errStream.toString(UTF_8.name());
+    assertThat(timings).contains("ModuleConversionPass: 3 walks");
+    assertThat(timings).contains("TypeConversionPass: 3 walks");
+    assertThat(timings).contains("TypeAnnotationPass: 1 walk,");
+  }
+
+  /** Records the visited nodes, along with the name of the statement they are in. */
+  private class Recorder extends AbstractPostOrderCallback {
+    private final String name;
+
+    private Recorder(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public void visit(NodeTraversal t, Node n, Node parent) {
+      String visit = name + " " + n.getToken();
+      if (n.isName()) {
+        visit += " " + n.getString();
+      } else if (n.isExprResult()) {
+        visit += " " + n.getFirstFirstChild().getString();
+      }
+      visits.add(visit);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package com.google.javascript.gents;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TypeScriptFormatterTest {
+
+  @Test
+  public void testJoinsInsertedLineBreaks() {
+    assertThat(TypeScriptFormatter.format("export \nclass A {\n}\n"))
+        .isEqualTo("export class A {}\n");
+    assertThat(TypeScriptFormatter.format("export const nop =  \nfunction() {\n};\n"))
+        .isEqualTo("export const nop = function() {};\n");
+    assertThat(TypeScriptFormatter.format("f(goog.bind( \nfunction() {\n  x();\n}, this));\n"))
+        .isEqualTo("f(goog.bind(function() {\n  x();\n}, this));\n");
+  }
+
+  @Test
+  public void testBlankLines() {
+    assertThat(
+            TypeScriptFormatter.format(
+                "class A {\n   \n  // Field \n  a: number;\n \n \n  b: number;\n \n}\n \n \nlet x;"))
+        .isEqualTo("class A {\n  // Field\n  a: number;\n\n  b: number;\n}\n\nlet x;\n");
+  }
+
+  @Test
+  public void testComments() {
+    assertThat(
+            TypeScriptFormatter.format("class A {\n  /**\n      * Doc.\n      */\n  f() {\n  }\n}"))
+        .isEqualTo("class A {\n  /**\n   * Doc.\n   */\n  f() {}\n}\n");
+    assertThat(TypeScriptFormatter.format("export{\n// Only a comment \n};\n"))
+        .isEqualTo("export {\n  // Only a comment\n};\n");
+  }
+
+  @Test
+  public void testObjectColons() {
+    assertThat(TypeScriptFormatter.format("let x: {a:number, b:{c:string}} = {a:1, b:{c:'x:y'}};"))
+        .isEqualTo("let x: {a: number, b: {c: string}} = {a: 1, b: {c: 'x:y'}};\n");
+    assertThat(TypeScriptFormatter.format("let x = y ? a : b; // {a:b}"))
+        .isEqualTo("let x = y ? a : b; // {a:b}\n");
+  }
+
+  @Test
+  public void testImportsAndExports() {
+    assertThat(TypeScriptFormatter.format("import{Foo}from './b';\nimport*as b from './b';"))
+        .isEqualTo("import {Foo} from './b';\nimport * as b from './b';\n");
+    assertThat(TypeScriptFormatter.format("import{a as b, c}from \"./}from '\";"))
+        .isEqualTo("import {a as b, c} from \"./}from '\";\n");
+    assertThat(TypeScriptFormatter.format("export{A}from './a';\nexport*from './b';"))
+        .isEqualTo("export {A} from './a';\nexport * from './b';\n");
+  }
+
+  @Test
+  public void testKeepsContentsOfLiterals() {
+    assertThat(TypeScriptFormatter.format("const s = `line one  \n\n\n  x:y {a:b}`;"))
+        .isEqualTo("const s = `line one  \n\n\n  x:y {a:b}`;\n");
+    assertThat(TypeScriptFormatter.format("f(`{\n}`, `${g({a:1})} \n  }`);\nclass A {\n}"))
+        .isEqualTo("f(`{\n}`, `${g({a:1})} \n  }`);\nclass A {}\n");
+    assertThat(TypeScriptFormatter.format("const s = 'a \\\n   b';\nlet x = {a:1};"))
+        .isEqualTo("const s = 'a \\\n   b';\nlet x = {a: 1};\n");
+    // Quotes and backticks in comments do not open literals.
+    assertThat(TypeScriptFormatter.format("// don`t \nlet x;  \n/* it's `\n */\nlet y;  "))
+        .isEqualTo("// don`t\nlet x;\n/* it's `\n */\nlet y;\n");
+  }
+
+  @Test
+  public void testJoinsOnlyLinesWithInsertedLineBreaks() {
+    assertThat(TypeScriptFormatter.format("let x = [\n  1, \n  2\n];"))
+        .isEqualTo("let x = [\n  1, 2\n];\n");
+  }
+
+  @Test
+  public void testKeepsContentsOfRegularExpressionsAndComments() {
+    assertThat(TypeScriptFormatter.format("const r = /\\{(\\w+):(\\w+)\\}/;"))
+        .isEqualTo("const r = /\\{(\\w+):(\\w+)\\}/;\n");
+    assertThat(TypeScriptFormatter.format("let x = {a:s.replace(/{x:y}/g, '')};"))
+        .isEqualTo("let x = {a: s.replace(/{x:y}/g, '')};\n");
+    assertThat(TypeScriptFormatter.format("let x = {a:/[/{]:`/.test(s)};\nlet y = `${1}`;"))
+        .isEqualTo("let x = {a: /[/{]:`/.test(s)};\nlet y = `${1}`;\n");
+    assertThat(TypeScriptFormatter.format("let x = {a:b / c, d:(e) / f}; /* {g:h} */"))
+        .isEqualTo("let x = {a: b / c, d: (e) / f}; /* {g:h} */\n");
+  }
+}
@@ -70,7 +70,19 @@ public class TypeScriptGeneratorMultiTest {
 
   @Test
   public void runTest() throws Exception {
-    TypeScriptGenerator gents = new TypeScriptGenerator(new Options());
+    runTest(1);
+  }
+
+  @Test
+  public void runTestWithParallelEmit() throws Exception {
+    runTest(4);
+  }
+
+  private void runTest(int parallelism) throws Exception {
+    Options options = new Options();
+    options.parallelism = parallelism;
+    options.formatter = TypeScriptGeneratorTest.getFormatter();
+    TypeScriptGenerator gents = new TypeScriptGenerator(options);
 
     List<File> testFiles =
         getTestInputFilesRecursive(DeclarationGeneratorTest.JS, multiTestPath, dir.getName());
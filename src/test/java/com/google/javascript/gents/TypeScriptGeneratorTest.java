@@ -61,6 +61,14 @@ public class TypeScriptGeneratorTest {
     return testDir.resolve(packageName.replace('.', File.separatorChar));
   }
 
+  /**
+   * The goldens are formatted with clang-format, running the tests with {@code
+   * -Dgents.formatter=BUILTIN} compares the built-in formatter against them.
+   */
+  static Options.Formatter getFormatter() {
+    return Options.Formatter.valueOf(System.getProperty("gents.formatter", "CLANG_FORMAT"));
+  }
+
   static String getFileText(final File input) throws IOException {
     // SourceFile handles <zipfile>!<jsfile> paths internally.
     String text = SourceFile.fromFile(input.getPath(), UTF_8).getCode();
@@ -88,6 +96,7 @@ public class TypeScriptGeneratorTest {
     } else {
       options = new Options();
     }
+    options.formatter = getFormatter();
 
     TypeScriptGenerator gents = new TypeScriptGenerator(options);
 
@@ -0,0 +1,44 @@
+goog.module('gents.repeated_types');
+
+// Repeated type annotations are converted once and copied on reuse, so
+// changes that later passes make to one of them don't affect the others.
+
+/** @type {?(string | number)} */
+var a = null;
+
+/** @type {?(string | number)} */
+var b = null;
+
+/** @type {{x: ?(string | number), y: !Array<string>}} */
+var r1 = {x: null, y: []};
+
+/** @type {{x: ?(string | number), y: !Array<string>}} */
+var r2 = {x: 'x', y: []};
+
+/** @type {function(string, number=): boolean} */
+const f1 = function(s, n) {
+  return true;
+};
+
+/** @type {function(string, number=): boolean} */
+const f2 = function(t, m) {
+  return false;
+};
+
+/**
+ * @param {!Array<number>} m
+ * @return {!Object<string, number>}
+ */
+var g = function(m) {
+  return {};
+};
+
+/**
+ * @param {!Array<number>} m
+ * @return {!Object<string, number>}
+ */
+var h = function(m) {
+  return {};
+};
+
+exports = {a, b, r1, r2, f1, f2, g, h};
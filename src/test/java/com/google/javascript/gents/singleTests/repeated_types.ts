@@ -0,0 +1,25 @@
+// Repeated type annotations are converted once and copied on reuse, so
+// changes that later passes make to one of them don't affect the others.
+export const a: string|number|null = null;
+
+export const b: string|number|null = null;
+
+export const r1: {x: string|number|null, y: string[]} = {x: null, y: []};
+
+export const r2: {x: string|number|null, y: string[]} = {x: 'x', y: []};
+
+export function f1(s: string, n?: number): boolean {
+  return true;
+}
+
+export function f2(t: string, m?: number): boolean {
+  return false;
+}
+
+export const g = function(m: number[]): {[key: string]: number} {
+  return {};
+};
+
+export const h = function(m: number[]): {[key: string]: number} {
+  return {};
+};